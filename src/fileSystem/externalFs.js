@@ -1,7 +1,8 @@
 import loader from "dialogs/loader";
-import { decode, encode } from "utils/encodings";
+import { decode, encode, readTranscoded } from "utils/encodings";
 import helpers from "utils/helpers";
 import Url from "utils/Url";
+import internalFs from "./internalFs";
 
 const externalFs = {
 	async readFile(url) {
@@ -145,6 +146,18 @@ const externalFs = {
 		});
 	},
 
+	/**
+	 * Stats many files in one call, in the order of uris. A file that
+	 * couldn't be stated has exists false and error set.
+	 * @param {string[]} uris
+	 * @returns {Promise<Array<import('.').Stat & {exists: boolean, error?: string}>>}
+	 */
+	statsMany(uris) {
+		return new Promise((resolve, reject) => {
+			sdcard.statsMany(uris, resolve, reject);
+		});
+	},
+
 	/**
 	 * Format the virtual uri to a real uri
 	 * @param {string} uri
@@ -178,6 +191,14 @@ function createFs(url) {
 			return externalFs.listDir(url);
 		},
 		async readFile(encoding) {
+			const text = await readTranscoded(
+				await externalFs.formatUri(url),
+				encoding,
+				(cache) => internalFs.readFile(cache),
+				(cache) => internalFs.delete(cache),
+			);
+			if (text !== null) return text;
+
 			let { data } = await externalFs.readFile(url, encoding);
 
 			if (encoding) {
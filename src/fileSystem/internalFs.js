@@ -1,6 +1,11 @@
 import fsOperation from "fileSystem";
 import ajax from "@deadlyjack/ajax";
-import { decode, encode } from "utils/encodings";
+import {
+	decode,
+	encode,
+	readTranscoded,
+	writeTranscoded,
+} from "utils/encodings";
 import helpers from "utils/helpers";
 import Url from "utils/Url";
 
@@ -405,6 +410,14 @@ function createFs(url) {
 			return files;
 		},
 		async readFile(encoding) {
+			const text = await readTranscoded(
+				url,
+				encoding,
+				(cache) => internalFs.readFile(cache),
+				(cache) => internalFs.delete(cache),
+			);
+			if (text !== null) return text;
+
 			let { data } = await internalFs.readFile(url, encoding);
 
 			if (encoding) {
@@ -415,6 +428,15 @@ function createFs(url) {
 		},
 		async writeFile(content, encoding) {
 			if (typeof content === "string" && encoding) {
+				const written = await writeTranscoded(
+					url,
+					content,
+					encoding,
+					(cache, data) => internalFs.writeFile(cache, data, true, false),
+					(cache) => internalFs.delete(cache),
+				);
+				if (written) return url;
+
 				content = await encode(content, encoding);
 			}
 			return internalFs.writeFile(url, content, false, false);
@@ -3,6 +3,11 @@ import alert from "dialogs/alert";
 import confirm from "dialogs/confirm";
 
 let checkFileEnabled = true;
+/**
+ * Fingerprints of files taken while they matched the editor text
+ * @type {WeakMap<object, object>}
+ */
+const fingerprints = new WeakMap();
 
 Object.defineProperty(checkFiles, "check", {
 	set(value) {
@@ -71,10 +76,16 @@ export default async function checkFiles() {
 				return;
 			}
 
+			if (await isUnchanged(file)) return;
+
+			// taken before reading, a change in between shows up next time
+			const fingerprint = await takeFingerprint(file);
 			const text = await fs.readFile(file.encoding);
 			const loadedText = file.session.doc.toString();
 
-			if (text !== loadedText) {
+			if (text === loadedText) {
+				if (fingerprint) fingerprints.set(file, fingerprint);
+			} else {
 				try {
 					const confirmation = await confirm(
 						strings.warning.toUpperCase(),
@@ -96,6 +107,43 @@ export default async function checkFiles() {
 		}
 	}
 
+	/**
+	 * Checks a file against its fingerprint natively, without reading it
+	 * into js or sending the editor text
+	 * @param {EditorFile} file
+	 * @returns {Promise<boolean>} true if the file is known to be unchanged
+	 */
+	async function isUnchanged(file) {
+		const fingerprint = fingerprints.get(file);
+		if (!fingerprint) return false;
+
+		try {
+			const res = await system.compareFileFingerprint(file.uri, fingerprint);
+			if (res.status === 0) {
+				fingerprints.set(file, res.fingerprint);
+				return true;
+			}
+		} catch (error) {
+			// compare the text
+		}
+
+		fingerprints.delete(file);
+		return false;
+	}
+
+	/**
+	 * @param {EditorFile} file
+	 * @returns {Promise<object|null>}
+	 */
+	async function takeFingerprint(file) {
+		if (!/^(file|content):/.test(file.uri)) return null;
+		try {
+			return await system.fingerprintFile(file.uri);
+		} catch (error) {
+			return null;
+		}
+	}
+
 	if (!editorManager.activeFile) {
 		app.focus();
 	}
@@ -71,6 +71,7 @@ import keyboardHandler, { keydownState } from "handlers/keyboard";
 import EditorFile from "./editorFile";
 import openFile from "./openFile";
 import { addedFolder } from "./openFolder";
+import { recordAutosaveChanges } from "./saveState";
 import appSettings from "./settings";
 import {
 	getSystemConfiguration,
@@ -1678,6 +1679,7 @@ async function EditorManager($header, $body) {
 
 			// Mirror latest state only on doc changes to avoid clobbering async loads
 			file.session = update.state;
+			recordAutosaveChanges(file, update);
 
 			// Debounced change handling (unsaved flag, cache, autosave)
 			if (checkTimeout) clearTimeout(checkTimeout);
@@ -1686,14 +1688,18 @@ async function EditorManager($header, $body) {
 			checkTimeout = setTimeout(async () => {
 				const changed = await file.isChanged();
 				file.isUnsaved = changed;
-				try {
-					await file.writeToCache();
-				} catch (error) {
-					warnRecoverable(
-						`Failed to write cache for ${file.filename || file.uri}`,
-						error,
-						`cache-write-${file.id}`,
-					);
+				// unsaved text goes to the autosave journal edit by edit (see
+				// saveState), its cache file catches up on pause and save
+				if (!changed || !window.system?.autosave) {
+					try {
+						await file.writeToCache();
+					} catch (error) {
+						warnRecoverable(
+							`Failed to write cache for ${file.filename || file.uri}`,
+							error,
+							`cache-write-${file.id}`,
+						);
+					}
 				}
 
 				events.emit("file-content-changed", file);
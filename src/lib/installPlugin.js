@@ -11,6 +11,9 @@ import constants from "./constants";
 import InstallState from "./installState";
 import loadPlugin from "./loadPlugin";
 
+/** Bytes of plugin files queued before they are written natively */
+const MAX_WRITE_BATCH_BYTES = 4 * 1024 * 1024;
+
 /** @type {import("dialogs/loader").Loader} */
 let loaderDialog;
 /** @type {Array<() => Promise<void>>} */
@@ -178,6 +181,39 @@ export default async function installPlugin(
 
 			const files = Object.keys(zip.files);
 			const limit = 2;
+			// local plugin files are written natively, atomically and in parallel,
+			// in batches of about MAX_WRITE_BATCH_BYTES
+			const nativeWrites =
+				/^file:/.test(pluginDir) && typeof system?.writeFiles === "function";
+			let writes = [];
+			let writesBytes = 0;
+
+			async function flushWrites() {
+				if (!writes.length) return;
+				const batch = writes;
+				writes = [];
+				writesBytes = 0;
+
+				try {
+					const result = await new Promise((resolve, reject) => {
+						system.writeFiles(batch, null, resolve, reject);
+					});
+					for (const file of result.files) {
+						if (!file.ok) {
+							console.error(`Error writing file ${file.path}:`, file.error);
+						}
+					}
+				} catch (error) {
+					console.warn("Native batch write failed, writing one by one:", error);
+					for (const { path, data } of batch) {
+						try {
+							await fsOperation(path).writeFile(data);
+						} catch (error) {
+							console.error(`Error writing file ${path}:`, error);
+						}
+					}
+				}
+			}
 
 			async function processFile(file) {
 				try {
@@ -202,14 +238,14 @@ export default async function installPlugin(
 						return;
 					}
 
-					// Ensure parent directory exists
+					// Ensure parent directory exists, native writes create it
 					const lastSlash = correctFile.lastIndexOf("/");
-					if (lastSlash !== -1) {
+					if (lastSlash !== -1 && !nativeWrites) {
 						const parentRel = correctFile.slice(0, lastSlash + 1);
 						await createFileRecursive(pluginDir, parentRel, true);
 					}
 
-					if (!state.exists(correctFile)) {
+					if (!state.exists(correctFile) && !nativeWrites) {
 						await createFileRecursive(pluginDir, correctFile, false);
 					}
 
@@ -221,6 +257,12 @@ export default async function installPlugin(
 
 					if (!(await state.isUpdated(correctFile, data))) return;
 
+					if (nativeWrites) {
+						writes.push({ path: fileUrl, data });
+						writesBytes += data.byteLength ?? data.length;
+						return;
+					}
+
 					await fsOperation(fileUrl).writeFile(data);
 				} catch (error) {
 					console.error(`Error processing file ${file}:`, error);
@@ -231,10 +273,13 @@ export default async function installPlugin(
 			for (let i = 0; i < files.length; i += limit) {
 				const batch = files.slice(i, i + limit);
 				await Promise.allSettled(batch.map(processFile));
+				if (writesBytes >= MAX_WRITE_BATCH_BYTES) await flushWrites();
 
 				// Allow UI thread to breathe
 				await new Promise((r) => setTimeout(r, 0));
 			}
+			await flushWrites();
+
 			// Emit a non-blocking warning if any unsafe entries were skipped
 			if (!isDependency && ignoredUnsafeEntries.size) {
 				const sample = Array.from(ignoredUnsafeEntries).slice(0, 3).join(", ");
@@ -4,7 +4,11 @@ import alert from "dialogs/alert";
 import confirm from "dialogs/confirm";
 import loader from "dialogs/loader";
 import { reopenWithNewEncoding } from "palettes/changeEncoding";
-import { decode, detectEncoding } from "utils/encodings";
+import {
+	decode,
+	detectEncoding,
+	detectFileEncoding,
+} from "utils/encodings";
 import helpers from "utils/helpers";
 import EditorFile from "./editorFile";
 import fileTypeHandler from "./fileTypeHandler";
@@ -394,7 +398,7 @@ export default async function openFile(file, options = {}) {
 			if (!confirmation) return;
 		}
 
-		const binData = await fs.readFile();
+		let binData = null;
 
 		// Determine encoding: if explicit provided use it, otherwise
 		// if settings.defaultFileEncoding === 'auto' then detect; else use the default as-is
@@ -403,7 +407,12 @@ export default async function openFile(file, options = {}) {
 			const defaultSetting = appSettings.value.defaultFileEncoding;
 			if (defaultSetting === "auto") {
 				try {
-					detectedEncoding = await detectEncoding(binData);
+					// natively from the first bytes, else from the whole file
+					detectedEncoding = await detectFileEncoding(uri);
+					if (!detectedEncoding) {
+						binData = await fs.readFile();
+						detectedEncoding = await detectEncoding(binData);
+					}
 					if (detectedEncoding === "auto") detectedEncoding = "UTF-8";
 				} catch (error) {
 					console.warn("Encoding detection failed, using UTF-8:", error);
@@ -414,7 +423,9 @@ export default async function openFile(file, options = {}) {
 			}
 		}
 
-		const fileContent = await decode(binData, detectedEncoding);
+		const fileContent = binData
+			? await decode(binData, detectedEncoding)
+			: await fs.readFile(detectedEncoding);
 
 		createEditor(false, fileContent, detectedEncoding);
 		if (mode !== "single") recents.addFile(uri);
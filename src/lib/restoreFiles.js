@@ -1,3 +1,6 @@
+import fsOperation from "fileSystem";
+import externalFs from "fileSystem/externalFs";
+import Url from "utils/Url";
 import EditorFile from "./editorFile";
 
 /**
@@ -8,6 +11,9 @@ import EditorFile from "./editorFile";
 export default async function restoreFiles(files) {
 	let rendered = false;
 
+	await restoreJournaledText(files);
+	await markDeletedFiles(files);
+
 	await Promise.all(
 		files.map(async (file, i) => {
 			rendered ||= !!file.render;
@@ -22,7 +28,84 @@ export default async function restoreFiles(files) {
 				render,
 				emitUpdate: false,
 			};
-			new EditorFile(filename, options);
+			const editorFile = new EditorFile(filename, options);
+			if (file.deletedFile) editorFile.deletedFile = true;
+		}),
+	);
+}
+
+/**
+ * Writes the text of unsaved buffers recorded in the autosave journal to
+ * their cache files, which the files load from. The journal is synced to
+ * disk as the text changes, so after a crash it is at least as recent as
+ * the cache file. Entries of buffers that are not restored as unsaved are
+ * discarded.
+ * @param {import('./editorFile').FileOptions[]} files
+ */
+async function restoreJournaledText(files) {
+	const autosave = window.system?.autosave;
+	if (!autosave) return;
+
+	let texts;
+	try {
+		texts = await autosave.replay();
+	} catch (error) {
+		window.log("error", "Autosave journal replay failed:");
+		window.log("error", error);
+		return;
+	}
+
+	const unsaved = new Set(
+		files.filter((file) => file.isUnsaved).map((file) => file.id),
+	);
+
+	await Promise.all(
+		Object.entries(texts).map(async ([id, text]) => {
+			if (!unsaved.has(id)) {
+				await autosave.discard(id).catch(() => {});
+				return;
+			}
+
+			try {
+				const cache = fsOperation(Url.join(CACHE_STORAGE, id));
+				if (await cache.exists()) {
+					await cache.writeFile(text);
+				} else {
+					await fsOperation(CACHE_STORAGE).createFile(id, text);
+				}
+			} catch (error) {
+				window.log("error", `Restoring autosaved text of ${id} failed:`);
+				window.log("error", error);
+			}
 		}),
 	);
 }
+
+/**
+ * Marks files whose source document no longer exists as deleted and
+ * unsaved, as loading them would, so their tabs show it before they are
+ * opened. All SAF files are stated in one call.
+ * @param {import('./editorFile').FileOptions[]} files
+ */
+async function markDeletedFiles(files) {
+	const documents = files.filter(
+		(file) => file.uri && externalFs.test(file.uri),
+	);
+	if (!documents.length) return;
+
+	let stats;
+	try {
+		stats = await externalFs.statsMany(documents.map((file) => file.uri));
+	} catch (error) {
+		window.log("error", "Stating restored files failed:");
+		window.log("error", error);
+		return;
+	}
+
+	stats.forEach((stat, i) => {
+		// an error means the document couldn't be checked, not that it's gone
+		if (stat.exists || stat.error) return;
+		documents[i].deletedFile = true;
+		documents[i].isUnsaved = true;
+	});
+}
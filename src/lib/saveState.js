@@ -3,10 +3,44 @@ import constants from "./constants";
 import { addedFolder } from "./openFolder";
 import appSettings from "./settings";
 
+/** Buffer ids this session has text for in the autosave journal */
+const journaledIds = new Set();
+/**
+ * Journal state per file: doc is the document the journal has, changes
+ * lead from it to pendingDoc and are sent as one delta on the next save.
+ * @type {WeakMap<object, {doc: object, pendingDoc: object, changes: Array<[number, number, string]>}>}
+ */
+const journalStates = new WeakMap();
+
+/**
+ * Collects the changes of an editor update for the autosave journal, called
+ * for every document change of the active file.
+ * @param {import("./editorFile").default} file
+ * @param {import("@codemirror/view").ViewUpdate} update
+ */
+export function recordAutosaveChanges(file, update) {
+	const state = journalStates.get(file);
+	if (!state) return;
+
+	if (state.pendingDoc !== update.startState.doc) {
+		// changed without passing here, the next save sends a snapshot
+		journalStates.delete(file);
+		return;
+	}
+
+	update.changes.iterChanges((fromA, toA, fromB, _toB, inserted) => {
+		// the changes of a set apply at once, the journal applies them in
+		// order, fromB is where one starts once those before it are applied
+		state.changes.push([fromB, fromB + toA - fromA, inserted.toString()]);
+	});
+	state.pendingDoc = update.state.doc;
+}
+
 export default () => {
 	if (!window.editorManager) return;
 
 	const filesToSave = [];
+	const unsavedFiles = [];
 	const folders = [];
 	const { editor, files, activeFile } = editorManager;
 	const { value: settings } = appSettings;
@@ -70,8 +104,11 @@ export default () => {
 
 		if (settings.rememberFiles || fileJson.isUnsaved)
 			filesToSave.push(fileJson);
+		if (fileJson.isUnsaved) unsavedFiles.push(file);
 	});
 
+	updateAutosaveJournal(unsavedFiles);
+
 	if (settings.rememberFolders) {
 		addedFolder.forEach((folder) => {
 			const { url, saveState, title, listState, listFiles } = folder;
@@ -90,3 +127,64 @@ export default () => {
 	localStorage.files = JSON.stringify(filesToSave);
 	localStorage.folders = JSON.stringify(folders);
 };
+
+/**
+ * Records the text of unsaved buffers in the native crash safe journal, it
+ * is replayed by restoreFiles if the app dies before the cache is written.
+ * Edits collected by recordAutosaveChanges are sent as a delta, so the cost
+ * follows the size of the edit; the whole text is sent only the first time,
+ * after changes that weren't collected, or when the journal rejects a delta.
+ * Buffers that are no longer unsaved are discarded from it.
+ * @param {import("./editorFile").default[]} files Unsaved files
+ */
+function updateAutosaveJournal(files) {
+	const autosave = window.system?.autosave;
+	if (!autosave) return;
+
+	const ids = new Set();
+	for (const file of files) {
+		ids.add(file.id);
+
+		// not loaded yet, its text is still the cache file
+		const doc = file.session?.doc;
+		if (!file.loaded || file.loading || !doc) continue;
+
+		const state = journalStates.get(file);
+		if (state?.doc === doc) continue;
+
+		if (state?.pendingDoc === doc && journaledIds.has(file.id)) {
+			const { changes } = state;
+			state.doc = doc;
+			state.changes = [];
+			autosave
+				.delta(file.id, changes)
+				.catch(() => snapshotAutosave(autosave, file));
+			continue;
+		}
+
+		snapshotAutosave(autosave, file);
+	}
+
+	for (const id of journaledIds) {
+		if (ids.has(id)) continue;
+		journaledIds.delete(id);
+		autosave.discard(id).catch(logJournalError);
+	}
+}
+
+/**
+ * Sends the current text of file, replacing whatever the journal has.
+ */
+function snapshotAutosave(autosave, file) {
+	const doc = file.session?.doc;
+	if (!doc) return;
+
+	journalStates.set(file, { doc, pendingDoc: doc, changes: [] });
+	journaledIds.add(file.id);
+	autosave.snapshot(file.id, doc.toString()).catch(logJournalError);
+}
+
+function logJournalError(error) {
+	window.log("error", "Autosave journal failed:");
+	window.log("error", error);
+}
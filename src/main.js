@@ -184,6 +184,16 @@ async function onDeviceReady() {
 			`Unhandled rejection: ${event.reason ? event.reason.message : "Unknown reason"}\nStack: ${event.reason ? event.reason.stack : "No stack available"}`,
 		);
 	});
+	// Native log lines saved by a crash of the previous session
+	system.getNativeLogs(
+		true,
+		({ lastCrash }) => {
+			lastCrash?.forEach(({ level, message }) => {
+				window.log(level, `[previous session] ${message}`);
+			});
+		},
+		console.error,
+	);
 
 	startAd();
 
@@ -831,8 +841,16 @@ function menuButtonHandler() {
 }
 
 function pauseHandler() {
-	const { acode } = window;
+	const { acode, editorManager } = window;
 	acode?.exec("save-state");
+
+	// unsaved text is journaled while editing, its cache files are only
+	// written once the app goes to the background
+	editorManager?.files.forEach((file) => {
+		if (file.type !== "editor" || !file.isUnsaved) return;
+		if (!file.loaded || file.loading) return;
+		file.writeToCache();
+	});
 }
 
 function resumeHandler() {
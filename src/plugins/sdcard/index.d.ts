@@ -15,6 +15,34 @@ interface DirListItem {
   isDirectory: Boolean;
   isFile: Boolean;
   uri: string;
+  url: string;
+  /**
+   * Only present when listed with `detailed` option
+   */
+  length?: number;
+  lastModified?: number;
+  canWrite?: boolean;
+  canDelete?: boolean;
+  canRename?: boolean;
+}
+
+interface ListDirOptions {
+  /**
+   * Include length, lastModified and permission flags of each entry
+   */
+  detailed?: boolean;
+  /**
+   * Index of first entry to return
+   */
+  offset?: number;
+  /**
+   * Maximum number of entries to return, -1 for all
+   */
+  limit?: number;
+  /**
+   * Skip the listing cache and query the provider
+   */
+  refresh?: boolean;
 }
 
 interface Stats {
@@ -31,6 +59,212 @@ interface Stats {
   uri: string;
 }
 
+interface ReadStreamOptions {
+  /**
+   * Byte offset to start reading from
+   */
+  offset?: number;
+  /**
+   * Maximum number of bytes to read, -1 reads till the end
+   */
+  length?: number;
+  /**
+   * Size of each chunk in bytes, defaults to 256KB
+   */
+  chunkSize?: number;
+}
+
+interface ReadStreamEnd {
+  type: 'end';
+  bytesRead: number;
+  /**
+   * Size of the file, -1 if provider doesn't report it
+   */
+  size: number;
+}
+
+interface WriteResult {
+  bytesWritten: number;
+  /**
+   * Time taken to write the file in milliseconds
+   */
+  elapsed: number;
+  url: string;
+}
+
+interface WalkTreeOptions {
+  /**
+   * Maximum depth to descend, children of the root are at depth 1. -1 for no limit
+   */
+  maxDepth?: number;
+  /**
+   * Globs to skip, e.g. `.git`, `node_modules`, `build/**`. Globs without "/"
+   * match entry names, others match the path relative to the root
+   */
+  ignore?: string[];
+  /**
+   * Number of entries per batch, defaults to 200
+   */
+  batchSize?: number;
+  /**
+   * Number of directories listed in parallel, defaults to 4
+   */
+  threads?: number;
+}
+
+interface WalkTreeEntry extends DirListItem {
+  /**
+   * Path relative to the walked directory
+   */
+  path: string;
+  depth: number;
+  length: number;
+  lastModified: number;
+}
+
+interface WalkTreeSummary {
+  type: 'end';
+  files: number;
+  directories: number;
+  /**
+   * Number of directories that could not be listed
+   */
+  errors: number;
+  /**
+   * Time taken in milliseconds
+   */
+  elapsed: number;
+}
+
+interface SearchOptions extends WalkTreeOptions {
+  /**
+   * Treat query as a Java regular expression, matched line by line
+   */
+  regex?: boolean;
+  caseSensitive?: boolean;
+  wholeWord?: boolean;
+  /**
+   * Stop after this many matches, defaults to 1000, -1 for no limit
+   */
+  maxResults?: number;
+  /**
+   * Skip files larger than this many bytes, defaults to 10MB, -1 for no limit
+   */
+  maxFileSize?: number;
+}
+
+interface SearchMatch {
+  url: string;
+  /**
+   * Path relative to the searched directory
+   */
+  path: string;
+  name: string;
+  /**
+   * Zero based line and column of the match
+   */
+  line: number;
+  column: number;
+  length: number;
+  match: string;
+  /**
+   * Text around the match
+   */
+  preview: string;
+}
+
+interface SearchSummary {
+  type: 'end';
+  /**
+   * Number of text files searched
+   */
+  files: number;
+  matches: number;
+  /**
+   * Number of files that could not be read
+   */
+  errors: number;
+  limitReached: boolean;
+  elapsed: number;
+}
+
+interface CopyProgress {
+  type: 'progress';
+  filesDone: number;
+  filesTotal: number;
+  bytesDone: number;
+  bytesTotal: number;
+  /**
+   * Bytes per second since the copy started
+   */
+  throughput: number;
+  /**
+   * True while source tree is still being scanned, totals may still grow
+   */
+  scanning: boolean;
+}
+
+interface CopyOptions {
+  /**
+   * Called periodically while copying
+   */
+  onProgress?: (progress: CopyProgress) => void;
+  /**
+   * What to do when destination already has an entry with the same name,
+   * defaults to 'rename'
+   */
+  conflict?: 'rename' | 'overwrite' | 'skip' | 'fail';
+  /**
+   * Number of files copied in parallel, defaults to 4
+   */
+  threads?: number;
+}
+
+interface CacheStats {
+  hits: number;
+  misses: number;
+  /**
+   * hits / (hits + misses), 0 if cache is not used yet
+   */
+  hitRate: number;
+  invalidations: number;
+  entries: number;
+  maxEntries: number;
+  /**
+   * Path to document id cache used by getPath
+   */
+  paths: {
+    hits: number;
+    misses: number;
+    hitRate: number;
+    nodes: number;
+    maxNodes: number;
+  };
+}
+
+interface WatchOptions {
+  /**
+   * Watch sub directories of a directory, default true
+   */
+  recursive?: boolean;
+  /**
+   * Quiet time in ms before a batch is sent, default 50
+   */
+  debounce?: number;
+}
+
+interface WatchEvent {
+  /**
+   * Absolute path of the changed file
+   */
+  path: string;
+  kind: 'create' | 'modify' | 'delete' | 'move';
+  /**
+   * Previous path, for moves within the watched tree
+   */
+  from?: string;
+}
+
 interface DocumentFile {
   canWrite: boolean;
   filename: string;
@@ -53,6 +287,23 @@ interface SDcard {
     onSuccess: (url: string) => void,
     onFail: (err: any) => void,
   ): void;
+  /**
+   * Copy file/directory to given destination with progress and cancellation
+   * @param src Source url
+   * @param dest Destination url
+   * @param onSuccess Callback function on success returns url of copied file/dir
+   * @param onFail Callback function on error returns error object
+   * @param options Progress listener and conflict policy
+   */
+  copy(
+    src: string,
+    dest: string,
+    onSuccess: (url: string) => void,
+    onFail: (err: any) => void,
+    options: CopyOptions,
+  ): {
+    cancel: () => void;
+  };
   /**
    * Creates new directory at given source url.
    * @param src Source url
@@ -151,11 +402,13 @@ interface SDcard {
    * @param src Directory url
    * @param onSuccess Callback function on success returns list of files/directory
    * @param onFail Callback function on error returns error object
+   * @param options Listing options
    */
   listDir(
     src: string,
     onSuccess: (list: Array<DirListItem>) => void,
     onFail: (err: any) => void,
+    options?: ListDirOptions,
   ): void;
   /**
    * Move file/directory to given destination
@@ -170,6 +423,26 @@ interface SDcard {
     onSuccess: (url: string) => void,
     onFail: (err: any) => void,
   ): void;
+  /**
+   * Move file/directory to given destination with progress and cancellation.
+   * If the provider can't move (e.g. across volumes) it is copied and then
+   * deleted. An interrupted or cancelled move resumes when the same move is
+   * started again.
+   * @param src Source url
+   * @param dest Destination url
+   * @param onSuccess Callback function on success returns url of moved file/dir
+   * @param onFail Callback function on error returns error object
+   * @param options Progress listener and conflict policy
+   */
+  move(
+    src: string,
+    dest: string,
+    onSuccess: (url: string) => void,
+    onFail: (err: any) => void,
+    options: CopyOptions,
+  ): {
+    cancel: () => void;
+  };
   /**
    * Opens file provider to select file
    * @param onSuccess Callback function on success returns url of selected file
@@ -207,6 +480,23 @@ interface SDcard {
     onSuccess: (url: string) => void,
     onFail: (err: any) => void,
   ): void;
+  /**
+   * Reads file in chunks, chunks are delivered in order
+   * @param src file url
+   * @param options Range and chunk size
+   * @param onChunk Callback function for each chunk with its byte offset
+   * @param onEnd Callback function when whole range is read
+   * @param onFail Callback function on error returns error object
+   */
+  readStream(
+    src: string,
+    options: ReadStreamOptions,
+    onChunk: (chunk: ArrayBuffer, offset: number) => void,
+    onEnd: (res: ReadStreamEnd) => void,
+    onFail: (err: any) => void,
+  ): {
+    cancel: () => void;
+  };
   /**
    * Writes new content to the given file.
    * @param src file url
@@ -235,6 +525,20 @@ interface SDcard {
     onSuccess: (res: 'OK') => void,
     onFail: (err: any) => void,
   ): void;
+  /**
+   * Writes new content to the given file without truncating it before the
+   * new content is written.
+   * @param src file url
+   * @param content new file content
+   * @param onSuccess Callback function on success returns bytes written and time taken
+   * @param onFail Callback function on error returns error object
+   */
+  writeFile(
+    src: string,
+    content: string | ArrayBuffer,
+    onSuccess: (res: WriteResult) => void,
+    onFail: (err: any) => void,
+  ): void;
   /**
    * Gets stats of given file
    * @param src file/directory url
@@ -247,13 +551,82 @@ interface SDcard {
     onFail: (err: any) => void,
   ): void;
   /**
-   * Listens for file changes
-   * @param src File url
-   * @param listener Callback function on file change returns file stats
+   * Gets stats of many files in one call
+   * @param srcs file/directory urls
+   * @param onSuccess Callback function on success returns stats in the same
+   * order, a file that couldn't be stated has exists false and error set
+   * @param onFail Callback function on error returns error object
+   */
+  statsMany(
+    srcs: string[],
+    onSuccess: (stats: (Stats & { error?: string })[]) => void,
+    onFail: (err: any) => void,
+  ): void;
+  /**
+   * Recursively lists a directory, entries are delivered in batches
+   * @param src Directory url
+   * @param options Depth limit, ignore globs and batching
+   * @param onBatch Callback function for each batch of entries
+   * @param onEnd Callback function when walk is complete
+   * @param onFail Callback function on error returns error object
+   */
+  walkTree(
+    src: string,
+    options: WalkTreeOptions,
+    onBatch: (entries: Array<WalkTreeEntry>) => void,
+    onEnd: (summary: WalkTreeSummary) => void,
+    onFail: (err: any) => void,
+  ): {
+    cancel: () => void;
+  };
+  /**
+   * Searches text in the files of a directory without reading them over the
+   * bridge, matches are delivered in batches
+   * @param src Directory url, SAF or file://
+   * @param query Text or regular expression to search for
+   * @param options Matching options, ignore globs and limits
+   * @param onMatches Callback function for each batch of matches
+   * @param onEnd Callback function when search is complete
+   * @param onFail Callback function on error returns error object
+   */
+  search(
+    src: string,
+    query: string,
+    options: SearchOptions,
+    onMatches: (matches: Array<SearchMatch>) => void,
+    onEnd: (summary: SearchSummary) => void,
+    onFail: (err: any) => void,
+  ): {
+    cancel: () => void;
+  };
+  /**
+   * Gets hit/miss counters of the directory listing cache
+   * @param onSuccess Callback function on success returns cache stats
+   * @param onFail Callback function on error returns error object
+   */
+  getCacheStats(
+    onSuccess: (stats: CacheStats) => void,
+    onFail: (err: any) => void,
+  ): void;
+  /**
+   * Drops all cached directory listings and resolved paths
+   * @param onSuccess Callback function on success
+   * @param onFail Callback function on error returns error object
+   */
+  clearCache(onSuccess: () => void, onFail: (err: any) => void): void;
+  /**
+   * Listens for changes to a file, or to a directory tree. Changes are
+   * coalesced and delivered in batches.
+   * @param src File or directory url (file:// only)
+   * @param listener Callback function on changes returns batch of events
+   * @param onFail Callback function on error returns error object
+   * @param options Watch options
    */
   watchFile(
     src: string,
-    listener: () => void,
+    listener: (events: WatchEvent[]) => void,
+    onFail?: (err: any) => void,
+    options?: WatchOptions,
   ): {
     unwatch: () => void;
   };
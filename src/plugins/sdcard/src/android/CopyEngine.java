@@ -0,0 +1,539 @@
+package com.foxdebug.sdcard;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Build;
+import android.os.ParcelFileDescriptor;
+import android.provider.DocumentsContract;
+import android.provider.DocumentsContract.Document;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Copies a document or a directory tree between SAF trees. Directories are
+ * created breadth first, ahead of their children, and file copies are fanned
+ * out on a bounded pool. Files are copied with FileChannel transfers when
+ * both sides hand out seekable descriptors, otherwise through a large
+ * buffer.
+ */
+class CopyEngine {
+
+  static final String CONFLICT_RENAME = "rename";
+  static final String CONFLICT_OVERWRITE = "overwrite";
+  static final String CONFLICT_SKIP = "skip";
+  static final String CONFLICT_FAIL = "fail";
+
+  private static final int BUFFER_SIZE = 256 * 1024;
+  private static final long TRANSFER_STEP = 8L * 1024 * 1024;
+  private static final long PROGRESS_INTERVAL_MS = 100;
+  /** Prefix of the copy that replaces an existing document on overwrite */
+  private static final String REPLACE_PREFIX = ".~";
+
+  interface Listener {
+    void onProgress(JSONObject progress);
+  }
+
+  /**
+   * Records copy progress so an interrupted copy can be resumed into the
+   * same target instead of starting over.
+   */
+  interface Journal {
+    Uri getTarget();
+
+    void setTarget(Uri target) throws IOException;
+
+    boolean isDone(String srcId);
+
+    void markDone(String srcId) throws IOException;
+  }
+
+  private final ContentResolver contentResolver;
+  private final Uri srcTree;
+  private final Uri destTree;
+  private final TreeWalker.ChildLister srcLister;
+  private final TreeWalker.ChildLister destLister;
+  private final AtomicBoolean cancelled;
+  private final Listener listener;
+  private final String conflict;
+  private final int threads;
+  private Journal journal;
+  private boolean resuming = false;
+
+  private final AtomicInteger filesTotal = new AtomicInteger();
+  private final AtomicInteger filesDone = new AtomicInteger();
+  private final AtomicLong bytesTotal = new AtomicLong();
+  private final AtomicLong bytesDone = new AtomicLong();
+  private final AtomicLong lastProgress = new AtomicLong();
+  private volatile boolean scanning = true;
+  private long start;
+
+  CopyEngine(
+    ContentResolver contentResolver,
+    Uri srcTree,
+    TreeWalker.ChildLister srcLister,
+    Uri destTree,
+    TreeWalker.ChildLister destLister,
+    JSONObject options,
+    AtomicBoolean cancelled,
+    Listener listener
+  ) {
+    this.contentResolver = contentResolver;
+    this.srcTree = srcTree;
+    this.srcLister = srcLister;
+    this.destTree = destTree;
+    this.destLister = destLister;
+    this.cancelled = cancelled;
+    this.listener = listener;
+
+    if (options == null) options = new JSONObject();
+    this.conflict = options.optString("conflict", CONFLICT_RENAME);
+    this.threads = Math.max(
+      1,
+      Math.min(
+        options.optInt("threads", 4),
+        Runtime.getRuntime().availableProcessors()
+      )
+    );
+  }
+
+  /**
+   * Makes the copy resumable. If the journal already has a target that
+   * still exists, the copy continues into it, skipping files the journal
+   * marks as done. A failed copy with a journal keeps what it created.
+   */
+  void setJournal(Journal journal) {
+    this.journal = journal;
+  }
+
+  /**
+   * Copies srcId into the directory destParentId and returns uri of the
+   * copy. Without a journal, whatever was created is deleted if the copy
+   * fails or is cancelled. On overwrite the copy is made next to the
+   * existing document, which is only replaced once the copy is complete.
+   */
+  Uri copy(String srcId, String destParentId) throws Exception {
+    start = System.currentTimeMillis();
+    Uri srcUri = DocumentsContract.buildDocumentUriUsingTree(srcTree, srcId);
+    Uri destParentUri = DocumentsContract.buildDocumentUriUsingTree(
+      destTree,
+      destParentId
+    );
+    DocumentCache.Row src = queryDocument(srcUri);
+    if (src == null) throw new FileNotFoundException("File not found.");
+
+    boolean isDirectory = Document.MIME_TYPE_DIR.equals(src.mime);
+    if (isDirectory && isWithin(srcUri, destParentUri)) {
+      throw new IOException("Cannot copy a directory into itself");
+    }
+
+    Uri root = null;
+
+    if (journal != null && journal.getTarget() != null) {
+      DocumentCache.Row target = queryDocument(journal.getTarget());
+      if (target != null) {
+        root = journal.getTarget();
+        resuming = true;
+      }
+    }
+
+    if (root == null) {
+      Uri existing = CONFLICT_RENAME.equals(conflict)
+        ? null
+        : findChild(destParentId, src.name);
+      if (existing != null) {
+        switch (conflict) {
+          case CONFLICT_SKIP:
+            return existing;
+          case CONFLICT_FAIL:
+            throw new IOException("File already exists: " + src.name);
+          case CONFLICT_OVERWRITE:
+            if (isWithin(existing, srcUri)) {
+              throw new IOException("Cannot copy a document over itself");
+            }
+            break;
+          default:
+            // provider picks a unique name for the new document
+            break;
+        }
+      }
+
+      root =
+        DocumentsContract.createDocument(
+          contentResolver,
+          destParentUri,
+          isDirectory ? Document.MIME_TYPE_DIR : mimeOf(src),
+          CONFLICT_OVERWRITE.equals(conflict) && existing != null
+            ? REPLACE_PREFIX + src.name
+            : src.name
+        );
+      if (root == null) throw new IOException("Unable to copy " + src.name);
+      if (journal != null) journal.setTarget(root);
+    }
+
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    List<Future<?>> copies = new ArrayList<Future<?>>();
+
+    try {
+      if (isDirectory) {
+        ArrayDeque<String[]> queue = new ArrayDeque<String[]>();
+        queue.add(new String[] { srcId, DocumentsContract.getDocumentId(root) });
+
+        while (!queue.isEmpty()) {
+          checkCancelled();
+          String[] pair = queue.poll();
+          List<DocumentCache.Row> rows = srcLister.list(pair[0]);
+          if (rows == null) {
+            throw new IOException("Cannot read directory.");
+          }
+
+          Uri destDir = DocumentsContract.buildDocumentUriUsingTree(
+            destTree,
+            pair[1]
+          );
+
+          for (DocumentCache.Row row : rows) {
+            if (Document.MIME_TYPE_DIR.equals(row.mime)) {
+              Uri dir = resuming ? findChild(pair[1], row.name) : null;
+              if (dir == null) {
+                dir =
+                  DocumentsContract.createDocument(
+                    contentResolver,
+                    destDir,
+                    Document.MIME_TYPE_DIR,
+                    row.name
+                  );
+              }
+              if (dir == null) {
+                throw new IOException("Unable to create " + row.name);
+              }
+              queue.add(
+                new String[] { row.docId, DocumentsContract.getDocumentId(dir) }
+              );
+            } else if (resuming && journal.isDone(row.docId)) {
+              skip(row);
+            } else {
+              Uri partial = resuming ? findChild(pair[1], row.name) : null;
+              if (partial != null) {
+                DocumentsContract.deleteDocument(contentResolver, partial);
+              }
+              copies.add(pool.submit(newFileCopy(row, destDir)));
+            }
+          }
+        }
+      } else if (resuming && journal.isDone(srcId)) {
+        skip(src);
+      } else {
+        copies.add(pool.submit(newFileCopy(src, root, true)));
+      }
+
+      scanning = false;
+      for (Future<?> copy : copies) {
+        try {
+          copy.get();
+        } catch (ExecutionException e) {
+          Throwable cause = e.getCause();
+          if (cause instanceof Exception) throw (Exception) cause;
+          throw e;
+        }
+      }
+
+      if (CONFLICT_OVERWRITE.equals(conflict)) {
+        root = replace(root, destParentId, src.name);
+        if (journal != null) journal.setTarget(root);
+      }
+
+      emitProgress(true);
+      return root;
+    } catch (Exception e) {
+      pool.shutdownNow();
+      if (journal == null) {
+        try {
+          DocumentsContract.deleteDocument(contentResolver, root);
+        } catch (Exception ignored) {}
+      }
+      throw e;
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  /**
+   * Whether the document uri is ancestor or lies inside it. Document ids
+   * are opaque, so the path the provider reports for uri is checked; only
+   * providers that can't report it fall back to "ancestor/child" ids.
+   */
+  private boolean isWithin(Uri ancestor, Uri uri) {
+    if (!ancestor.getAuthority().equals(uri.getAuthority())) return false;
+
+    String ancestorId = DocumentsContract.getDocumentId(ancestor);
+    String docId = DocumentsContract.getDocumentId(uri);
+    if (docId.equals(ancestorId)) return true;
+
+    if (Build.VERSION.SDK_INT >= 26) {
+      try {
+        DocumentsContract.Path path = DocumentsContract.findDocumentPath(
+          contentResolver,
+          uri
+        );
+        if (path != null) return path.getPath().contains(ancestorId);
+      } catch (Exception e) {
+        // provider can't find paths
+      }
+    }
+
+    return docId.startsWith(ancestorId + "/");
+  }
+
+  /**
+   * Puts the complete copy in place of the document named name, deleting
+   * it, and returns the uri of the renamed copy.
+   */
+  private Uri replace(Uri copy, String parentId, String name)
+    throws Exception {
+    DocumentCache.Row row = queryDocument(copy);
+    if (row == null) throw new IOException("Unable to copy " + name);
+    if (name.equals(row.name)) return copy;
+
+    Uri existing = findChild(parentId, name);
+    if (
+      existing != null &&
+      !DocumentsContract.deleteDocument(contentResolver, existing)
+    ) {
+      throw new IOException("Unable to replace " + name);
+    }
+
+    Uri renamed = DocumentsContract.renameDocument(contentResolver, copy, name);
+    if (renamed == null) throw new IOException("Unable to replace " + name);
+    return renamed;
+  }
+
+  private void skip(DocumentCache.Row row) {
+    filesTotal.incrementAndGet();
+    filesDone.incrementAndGet();
+    bytesTotal.addAndGet(row.size);
+    bytesDone.addAndGet(row.size);
+  }
+
+  private Callable<Void> newFileCopy(DocumentCache.Row row, Uri destDir) {
+    return newFileCopy(row, destDir, false);
+  }
+
+  /**
+   * Creates a task that copies one file. If created is true, dest is the
+   * already created document, otherwise it is the parent directory.
+   */
+  private Callable<Void> newFileCopy(
+    final DocumentCache.Row row,
+    final Uri dest,
+    final boolean created
+  ) {
+    filesTotal.incrementAndGet();
+    bytesTotal.addAndGet(row.size);
+    emitProgress(false);
+
+    return new Callable<Void>() {
+      @Override
+      public Void call() throws Exception {
+        checkCancelled();
+        Uri destUri = created
+          ? dest
+          : DocumentsContract.createDocument(
+            contentResolver,
+            dest,
+            mimeOf(row),
+            row.name
+          );
+        if (destUri == null) {
+          throw new IOException("Unable to create " + row.name);
+        }
+
+        Uri srcUri = DocumentsContract.buildDocumentUriUsingTree(
+          srcTree,
+          row.docId
+        );
+        long copied = copyContent(srcUri, destUri);
+
+        // size is 0 when the provider doesn't report it
+        if (row.size > 0 && copied != row.size) {
+          throw new IOException("Size mismatch after copying " + row.name);
+        }
+
+        if (journal != null) journal.markDone(row.docId);
+        filesDone.incrementAndGet();
+        emitProgress(false);
+        return null;
+      }
+    };
+  }
+
+  private long copyContent(Uri srcUri, Uri destUri) throws IOException {
+    ParcelFileDescriptor in = contentResolver.openFileDescriptor(srcUri, "r");
+    ParcelFileDescriptor out = null;
+
+    try {
+      out = contentResolver.openFileDescriptor(destUri, "w");
+      if (in == null || out == null) {
+        throw new FileNotFoundException("File not found.");
+      }
+
+      if (in.getStatSize() >= 0 && out.getStatSize() >= 0) {
+        return transfer(in, out);
+      }
+      return stream(in, out);
+    } finally {
+      if (in != null) in.close();
+      if (out != null) out.close();
+    }
+  }
+
+  private long transfer(ParcelFileDescriptor in, ParcelFileDescriptor out)
+    throws IOException {
+    try (
+      FileInputStream fis = new FileInputStream(in.getFileDescriptor());
+      FileOutputStream fos = new FileOutputStream(out.getFileDescriptor());
+      FileChannel source = fis.getChannel();
+      FileChannel target = fos.getChannel()
+    ) {
+      long size = source.size();
+      long position = 0;
+
+      while (position < size) {
+        checkCancelled();
+        long count = source.transferTo(
+          position,
+          Math.min(TRANSFER_STEP, size - position),
+          target
+        );
+        if (count <= 0) break;
+        position += count;
+        bytesDone.addAndGet(count);
+        emitProgress(false);
+      }
+
+      target.force(false);
+      return position;
+    }
+  }
+
+  private long stream(ParcelFileDescriptor in, ParcelFileDescriptor out)
+    throws IOException {
+    try (
+      InputStream is = new FileInputStream(in.getFileDescriptor());
+      OutputStream os = new FileOutputStream(out.getFileDescriptor())
+    ) {
+      byte[] buffer = new byte[BUFFER_SIZE];
+      long total = 0;
+      int read;
+
+      while ((read = is.read(buffer)) != -1) {
+        checkCancelled();
+        os.write(buffer, 0, read);
+        total += read;
+        bytesDone.addAndGet(read);
+        emitProgress(false);
+      }
+
+      os.flush();
+      return total;
+    }
+  }
+
+  private DocumentCache.Row queryDocument(Uri uri) {
+    Cursor cursor = contentResolver.query(
+      uri,
+      new String[] {
+        Document.COLUMN_DOCUMENT_ID,
+        Document.COLUMN_DISPLAY_NAME,
+        Document.COLUMN_MIME_TYPE,
+        Document.COLUMN_SIZE,
+        Document.COLUMN_LAST_MODIFIED,
+        Document.COLUMN_FLAGS,
+      },
+      null,
+      null,
+      null
+    );
+
+    if (cursor == null) return null;
+
+    try {
+      if (!cursor.moveToFirst()) return null;
+      return new DocumentCache.Row(
+        cursor.getString(0),
+        cursor.getString(1),
+        cursor.getString(2),
+        cursor.isNull(3) ? 0 : cursor.getLong(3),
+        cursor.isNull(4) ? 0 : cursor.getLong(4),
+        cursor.isNull(5) ? 0 : cursor.getInt(5)
+      );
+    } finally {
+      cursor.close();
+    }
+  }
+
+  private Uri findChild(String parentId, String name) throws Exception {
+    List<DocumentCache.Row> rows = destLister.list(parentId);
+    if (rows == null) return null;
+
+    for (DocumentCache.Row row : rows) {
+      if (name.equals(row.name)) {
+        return DocumentsContract.buildDocumentUriUsingTree(
+          destTree,
+          row.docId
+        );
+      }
+    }
+    return null;
+  }
+
+  private String mimeOf(DocumentCache.Row row) {
+    return row.mime == null ? "application/octet-stream" : row.mime;
+  }
+
+  private void checkCancelled() {
+    if (cancelled.get()) throw new CancellationException();
+  }
+
+  private void emitProgress(boolean done) {
+    if (listener == null) return;
+
+    long now = System.currentTimeMillis();
+    long last = lastProgress.get();
+    if (!done && now - last < PROGRESS_INTERVAL_MS) return;
+    if (!done && !lastProgress.compareAndSet(last, now)) return;
+
+    try {
+      long elapsed = Math.max(1, now - start);
+      long bytes = bytesDone.get();
+      JSONObject progress = new JSONObject();
+      progress.put("type", "progress");
+      progress.put("filesDone", filesDone.get());
+      progress.put("filesTotal", filesTotal.get());
+      progress.put("bytesDone", bytes);
+      progress.put("bytesTotal", bytesTotal.get());
+      progress.put("throughput", bytes * 1000 / elapsed);
+      progress.put("scanning", scanning && !done);
+      listener.onProgress(progress);
+    } catch (JSONException ignored) {}
+  }
+}
@@ -0,0 +1,251 @@
+package com.foxdebug.sdcard;
+
+import android.content.ContentResolver;
+import android.database.ContentObserver;
+import android.net.Uri;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Caches child listings of SAF directories, keyed by tree uri and parent
+ * document id. Every entry registers a ContentObserver on its children uri
+ * so changes made by other apps drop the entry, mutations made through the
+ * plugin are invalidated explicitly.
+ */
+class DocumentCache {
+
+  private static final int MAX_ENTRIES = 256;
+  private static final String SEPARATOR = "::";
+
+  private final ContentResolver contentResolver;
+  private ChangeListener changeListener;
+  private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(
+    16,
+    0.75f,
+    true
+  ) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+      if (size() > MAX_ENTRIES) {
+        unregister(eldest.getValue());
+        return true;
+      }
+      return false;
+    }
+  };
+
+  private long generation = 0;
+  private long hits = 0;
+  private long misses = 0;
+  private long invalidations = 0;
+
+  DocumentCache(ContentResolver contentResolver) {
+    this.contentResolver = contentResolver;
+  }
+
+  /**
+   * Told when a listing is dropped because the provider reported a change.
+   */
+  interface ChangeListener {
+    void onChange(String tree, String parentId);
+  }
+
+  void setChangeListener(ChangeListener changeListener) {
+    this.changeListener = changeListener;
+  }
+
+  static class Row {
+
+    final String docId;
+    final String name;
+    final String mime;
+    final long size;
+    final long lastModified;
+    final int flags;
+
+    Row(
+      String docId,
+      String name,
+      String mime,
+      long size,
+      long lastModified,
+      int flags
+    ) {
+      this.docId = docId;
+      this.name = name;
+      this.mime = mime;
+      this.size = size;
+      this.lastModified = lastModified;
+      this.flags = flags;
+    }
+  }
+
+  private static class Entry {
+
+    final String parentId;
+    final List<Row> rows;
+    ContentObserver observer;
+
+    Entry(String parentId, List<Row> rows) {
+      this.parentId = parentId;
+      this.rows = rows;
+    }
+  }
+
+  /**
+   * Generation changes on every invalidation. Read it before querying the
+   * provider and pass it to put, so a listing that raced with a mutation is
+   * not cached.
+   */
+  synchronized long generation() {
+    return generation;
+  }
+
+  synchronized List<Row> get(String tree, String parentId) {
+    Entry entry = entries.get(key(tree, parentId));
+    if (entry == null) {
+      misses++;
+      return null;
+    }
+
+    hits++;
+    return entry.rows;
+  }
+
+  synchronized void put(
+    final String tree,
+    final String parentId,
+    Uri childrenUri,
+    List<Row> rows,
+    long expectedGeneration
+  ) {
+    if (expectedGeneration != generation) return;
+
+    final String key = key(tree, parentId);
+    Entry entry = new Entry(parentId, rows);
+    entry.observer =
+      new ContentObserver(null) {
+        @Override
+        public void onChange(boolean selfChange) {
+          invalidateKey(key);
+          ChangeListener listener = changeListener;
+          if (listener != null) listener.onChange(tree, parentId);
+        }
+      };
+
+    try {
+      contentResolver.registerContentObserver(
+        childrenUri,
+        true,
+        entry.observer
+      );
+    } catch (SecurityException e) {
+      // can't watch this uri, don't cache what we can't invalidate
+      return;
+    }
+
+    Entry old = entries.put(key, entry);
+    if (old != null) unregister(old);
+  }
+
+  synchronized void invalidate(String tree, String parentId) {
+    invalidateKey(key(tree, parentId));
+  }
+
+  /**
+   * Drops every listing that could contain or describe the given document:
+   * the document's own listing, its descendants (for providers with path
+   * like ids) and any listing that has it as a child.
+   */
+  synchronized void invalidateDocument(String docId) {
+    if (docId == null) return;
+    generation++;
+
+    String prefix = docId + "/";
+    Iterator<Entry> iterator = entries.values().iterator();
+    while (iterator.hasNext()) {
+      Entry entry = iterator.next();
+      boolean stale =
+        docId.equals(entry.parentId) ||
+        entry.parentId.startsWith(prefix) ||
+        containsChild(entry, docId);
+
+      if (stale) {
+        unregister(entry);
+        iterator.remove();
+        invalidations++;
+      }
+    }
+  }
+
+  /**
+   * Drops the listings of parentId, in every tree.
+   */
+  synchronized void invalidateListing(String parentId) {
+    if (parentId == null) return;
+    generation++;
+
+    Iterator<Entry> iterator = entries.values().iterator();
+    while (iterator.hasNext()) {
+      Entry entry = iterator.next();
+      if (parentId.equals(entry.parentId)) {
+        unregister(entry);
+        iterator.remove();
+        invalidations++;
+      }
+    }
+  }
+
+  synchronized void clear() {
+    generation++;
+    for (Entry entry : entries.values()) {
+      unregister(entry);
+    }
+    invalidations += entries.size();
+    entries.clear();
+  }
+
+  synchronized JSONObject getStats() throws JSONException {
+    JSONObject stats = new JSONObject();
+    long lookups = hits + misses;
+    stats.put("hits", hits);
+    stats.put("misses", misses);
+    stats.put("hitRate", lookups == 0 ? 0 : (double) hits / lookups);
+    stats.put("invalidations", invalidations);
+    stats.put("entries", entries.size());
+    stats.put("maxEntries", MAX_ENTRIES);
+    return stats;
+  }
+
+  private synchronized void invalidateKey(String key) {
+    generation++;
+    Entry entry = entries.remove(key);
+    if (entry != null) {
+      unregister(entry);
+      invalidations++;
+    }
+  }
+
+  private boolean containsChild(Entry entry, String docId) {
+    for (Row row : entry.rows) {
+      if (docId.equals(row.docId)) return true;
+    }
+    return false;
+  }
+
+  private void unregister(Entry entry) {
+    if (entry.observer == null) return;
+    try {
+      contentResolver.unregisterContentObserver(entry.observer);
+    } catch (Exception ignored) {}
+    entry.observer = null;
+  }
+
+  private static String key(String tree, String parentId) {
+    return tree + SEPARATOR + parentId;
+  }
+}
@@ -0,0 +1,128 @@
+package com.foxdebug.sdcard;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Reads whole files for SDcard.readFile. Local files (file:// uris and
+ * absolute paths) and content uris backed by a seekable file descriptor are
+ * read through a FileChannel: memory mapped from MMAP_THRESHOLD on, into an
+ * exactly sized array below it. Only content uris without a file descriptor
+ * are streamed.
+ */
+final class LocalRead {
+
+  private static final int MMAP_THRESHOLD = 256 * 1024;
+  private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+
+  private LocalRead() {}
+
+  /**
+   * Returns the local file for a file:// uri or an absolute path, null for
+   * anything else.
+   */
+  private static File toFile(Uri uri) {
+    String scheme = uri.getScheme();
+    String path = uri.getPath();
+    if (path == null) return null;
+
+    if (ContentResolver.SCHEME_FILE.equals(scheme)) return new File(path);
+    if (scheme == null && path.startsWith("/")) return new File(path);
+    return null;
+  }
+
+  static byte[] readBytes(Context context, Uri uri) throws IOException {
+    File file = toFile(uri);
+    if (file != null) {
+      try (FileInputStream in = new FileInputStream(file)) {
+        return readBytes(in.getChannel());
+      }
+    }
+
+    ParcelFileDescriptor pfd = openFileDescriptor(context, uri);
+    if (pfd != null) {
+      try (
+        FileInputStream in = new ParcelFileDescriptor.AutoCloseInputStream(pfd)
+      ) {
+        return readBytes(in.getChannel());
+      }
+    }
+
+    return readStream(context, uri);
+  }
+
+  private static byte[] readStream(Context context, Uri uri)
+    throws IOException {
+    try (InputStream in = openInputStream(context, uri)) {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      byte[] buffer = new byte[STREAM_BUFFER_SIZE];
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        out.write(buffer, 0, read);
+      }
+      return out.toByteArray();
+    }
+  }
+
+  private static byte[] readBytes(FileChannel channel) throws IOException {
+    long size = channel.size();
+    if (size > Integer.MAX_VALUE) throw new IOException("File too large");
+
+    byte[] bytes = new byte[(int) size];
+    if (size >= MMAP_THRESHOLD) {
+      channel.map(FileChannel.MapMode.READ_ONLY, 0, size).get(bytes);
+      return bytes;
+    }
+
+    ByteBuffer buffer = ByteBuffer.wrap(bytes);
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer) < 0) break;
+    }
+    // shrank while reading
+    if (buffer.hasRemaining()) return Arrays.copyOf(bytes, buffer.position());
+    return bytes;
+  }
+
+  /**
+   * Opens a seekable file descriptor, null if the provider only streams
+   * (pipes report an unknown size).
+   */
+  private static ParcelFileDescriptor openFileDescriptor(
+    Context context,
+    Uri uri
+  ) {
+    ParcelFileDescriptor pfd;
+    try {
+      pfd = context.getContentResolver().openFileDescriptor(uri, "r");
+    } catch (Exception e) {
+      return null;
+    }
+
+    if (pfd == null) return null;
+    if (pfd.getStatSize() < 0) {
+      try {
+        pfd.close();
+      } catch (IOException ignored) {}
+      return null;
+    }
+    return pfd;
+  }
+
+  private static InputStream openInputStream(Context context, Uri uri)
+    throws FileNotFoundException {
+    InputStream in = context.getContentResolver().openInputStream(uri);
+    if (in == null) throw new FileNotFoundException("File not found");
+    return in;
+  }
+}
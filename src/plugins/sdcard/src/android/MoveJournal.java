@@ -0,0 +1,170 @@
+package com.foxdebug.sdcard;
+
+import android.net.Uri;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.HashSet;
+import java.util.Set;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Append only journal of a move that fell back to copy and delete. One JSON
+ * object per line: a header naming the move, the target once it is created,
+ * then the id of every file that is fully copied. A move interrupted by a
+ * crash or cancellation finds its journal again and resumes.
+ */
+class MoveJournal implements CopyEngine.Journal {
+
+  private final File file;
+  private final Set<String> done = new HashSet<String>();
+  private Uri target;
+  private Writer writer;
+
+  private MoveJournal(File file) {
+    this.file = file;
+  }
+
+  /**
+   * Opens the journal for moving src into dest, reading back whatever a
+   * previous attempt recorded.
+   */
+  static MoveJournal open(File dir, String src, String dest)
+    throws IOException {
+    if (!dir.exists() && !dir.mkdirs()) {
+      throw new IOException("Unable to create " + dir.getAbsolutePath());
+    }
+
+    String key = src + "\n" + dest;
+    MoveJournal journal = new MoveJournal(new File(dir, hash(key) + ".log"));
+
+    if (journal.file.exists()) {
+      journal.read(key);
+    }
+
+    if (!journal.file.exists()) {
+      JSONObject header = new JSONObject();
+      try {
+        header.put("move", key);
+      } catch (JSONException e) {
+        throw new IOException(e);
+      }
+      journal.append(header);
+    }
+
+    return journal;
+  }
+
+  boolean isResuming() {
+    return target != null;
+  }
+
+  @Override
+  public synchronized Uri getTarget() {
+    return target;
+  }
+
+  @Override
+  public synchronized void setTarget(Uri target) throws IOException {
+    this.target = target;
+    try {
+      append(new JSONObject().put("target", target.toString()));
+    } catch (JSONException e) {
+      throw new IOException(e);
+    }
+  }
+
+  @Override
+  public synchronized boolean isDone(String srcId) {
+    return done.contains(srcId);
+  }
+
+  @Override
+  public synchronized void markDone(String srcId) throws IOException {
+    done.add(srcId);
+    try {
+      append(new JSONObject().put("done", srcId));
+    } catch (JSONException e) {
+      throw new IOException(e);
+    }
+  }
+
+  synchronized void close() {
+    if (writer == null) return;
+    try {
+      writer.close();
+    } catch (IOException ignored) {}
+    writer = null;
+  }
+
+  /**
+   * Closes and removes the journal, called once the move completed.
+   */
+  synchronized void delete() {
+    close();
+    file.delete();
+  }
+
+  private void read(String key) throws IOException {
+    try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+      String line = reader.readLine();
+      if (line == null || !key.equals(new JSONObject(line).optString("move"))) {
+        // hash collision or a damaged header, start over
+        file.delete();
+        return;
+      }
+
+      while ((line = reader.readLine()) != null) {
+        JSONObject entry;
+        try {
+          entry = new JSONObject(line);
+        } catch (JSONException e) {
+          // last line may be cut short by a crash
+          break;
+        }
+
+        if (entry.has("target")) {
+          target = Uri.parse(entry.getString("target"));
+        } else if (entry.has("done")) {
+          done.add(entry.getString("done"));
+        }
+      }
+    } catch (JSONException e) {
+      file.delete();
+    }
+  }
+
+  private void append(JSONObject entry) throws IOException {
+    if (writer == null) {
+      writer =
+        new OutputStreamWriter(
+          new FileOutputStream(file, true),
+          StandardCharsets.UTF_8
+        );
+    }
+    writer.write(entry.toString());
+    writer.write('\n');
+    writer.flush();
+  }
+
+  private static String hash(String key) {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-1");
+      byte[] bytes = digest.digest(key.getBytes(StandardCharsets.UTF_8));
+      StringBuilder hex = new StringBuilder();
+      for (byte b : bytes) {
+        hex.append(String.format("%02x", b));
+      }
+      return hex.toString();
+    } catch (Exception e) {
+      return Integer.toHexString(key.hashCode());
+    }
+  }
+}
@@ -0,0 +1,127 @@
+package com.foxdebug.sdcard;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Trie from relative paths to document ids. Every directory that has been
+ * resolved through is a node keyed by tree uri and document id, holding the
+ * names of its children that are known so far, so resolving a/b/c walks three
+ * in memory edges instead of listing three directories. Edges are learned
+ * from listings and lookups and dropped when the plugin renames, deletes or
+ * moves a document, or when a cached listing is invalidated.
+ */
+class PathCache {
+
+  private static final int MAX_NODES = 1024;
+  private static final String SEPARATOR = "::";
+
+  private final LinkedHashMap<String, Node> nodes = new LinkedHashMap<String, Node>(
+    16,
+    0.75f,
+    true
+  ) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, Node> eldest) {
+      return size() > MAX_NODES;
+    }
+  };
+
+  private long hits = 0;
+  private long misses = 0;
+
+  private static class Node {
+
+    final String docId;
+    final HashMap<String, String> children = new HashMap<String, String>();
+
+    Node(String docId) {
+      this.docId = docId;
+    }
+  }
+
+  /**
+   * Returns the document id of name inside parentId, or null if the edge is
+   * not known.
+   */
+  synchronized String get(String tree, String parentId, String name) {
+    Node node = nodes.get(key(tree, parentId));
+    String docId = node == null ? null : node.children.get(name);
+
+    if (docId == null) misses++;
+    else hits++;
+    return docId;
+  }
+
+  synchronized void put(
+    String tree,
+    String parentId,
+    String name,
+    String docId
+  ) {
+    String key = key(tree, parentId);
+    Node node = nodes.get(key);
+    if (node == null) {
+      node = new Node(parentId);
+      nodes.put(key, node);
+    }
+    node.children.put(name, docId);
+  }
+
+  /**
+   * Forgets the known children of parentId, used when its listing changed.
+   */
+  synchronized void invalidate(String tree, String parentId) {
+    nodes.remove(key(tree, parentId));
+  }
+
+  /**
+   * Forgets everything that resolves through or to the given document: its
+   * own node, nodes of its descendants (for providers with path like ids)
+   * and every edge that points at it.
+   */
+  synchronized void invalidateDocument(String docId) {
+    if (docId == null) return;
+
+    String prefix = docId + "/";
+    Iterator<Node> iterator = nodes.values().iterator();
+    while (iterator.hasNext()) {
+      Node node = iterator.next();
+      if (docId.equals(node.docId) || node.docId.startsWith(prefix)) {
+        iterator.remove();
+        continue;
+      }
+
+      Iterator<String> children = node.children.values().iterator();
+      while (children.hasNext()) {
+        String childId = children.next();
+        if (docId.equals(childId) || childId.startsWith(prefix)) {
+          children.remove();
+        }
+      }
+    }
+  }
+
+  synchronized void clear() {
+    nodes.clear();
+  }
+
+  synchronized JSONObject getStats() throws JSONException {
+    JSONObject stats = new JSONObject();
+    long lookups = hits + misses;
+    stats.put("hits", hits);
+    stats.put("misses", misses);
+    stats.put("hitRate", lookups == 0 ? 0 : (double) hits / lookups);
+    stats.put("nodes", nodes.size());
+    stats.put("maxNodes", MAX_NODES);
+    return stats;
+  }
+
+  private static String key(String tree, String parentId) {
+    return tree + SEPARATOR + parentId;
+  }
+}
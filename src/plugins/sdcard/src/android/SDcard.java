@@ -4,34 +4,45 @@ import android.app.Activity;
 import android.content.ContentResolver;
 import android.content.Context;
 import android.content.Intent;
+import android.content.pm.PackageManager;
 import android.database.Cursor;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Environment;
-import android.os.FileObserver;
+import android.os.ParcelFileDescriptor;
 import android.os.storage.StorageManager;
 import android.os.storage.StorageVolume;
 import android.provider.DocumentsContract;
 import android.provider.DocumentsContract.Document;
-import android.text.TextUtils;
+import android.system.ErrnoException;
+import android.system.Os;
 import android.util.Base64;
 import android.util.Log;
 import androidx.documentfile.provider.DocumentFile;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.io.PrintWriter;
 import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 import org.apache.commons.io.FilenameUtils;
-import org.apache.commons.io.IOUtils;
 import org.apache.cordova.CallbackContext;
 import org.apache.cordova.CordovaInterface;
 import org.apache.cordova.CordovaPlugin;
@@ -51,13 +62,22 @@ public class SDcard extends CordovaPlugin {
   private final int OPEN_DOCUMENT = 6002;
   private final int PICK_FROM_GALLERY = 6003;
   private final String SEPARATOR = "::";
+  private final int DEFAULT_CHUNK_SIZE = 256 * 1024;
+  private final String MOVE_JOURNAL_DIR = "sdcard-moves";
+  private final int STATS_THREADS = 4;
+  private final String EXTERNAL_STORAGE_AUTHORITY =
+    "com.android.externalstorage.documents";
   private StorageManager storageManager;
   private Context context;
   private Activity activity;
   private ContentResolver contentResolver;
   private DocumentFile originalRootFile;
   private CallbackContext activityResultCallback;
-  private HashMap<String, MyFileObserver> fileObservers = new HashMap();
+  private WatchService watchService;
+  private ConcurrentHashMap<String, AtomicBoolean> tasks = new ConcurrentHashMap();
+  private DocumentCache documentCache;
+  private PathCache pathCache;
+  private WriteAccess writeAccess;
 
   public void initialize(CordovaInterface cordova, CordovaWebView webView) {
     super.initialize(cordova, webView);
@@ -67,6 +87,33 @@ public class SDcard extends CordovaPlugin {
     this.storageManager = (StorageManager) this.activity.getSystemService(
         Context.STORAGE_SERVICE
       );
+    this.documentCache = new DocumentCache(this.context.getContentResolver());
+    this.pathCache = new PathCache();
+    this.writeAccess = new WriteAccess(this.context);
+    this.watchService = new WatchService();
+    this.documentCache.setChangeListener(
+        new DocumentCache.ChangeListener() {
+          @Override
+          public void onChange(String tree, String parentId) {
+            pathCache.invalidate(tree, parentId);
+          }
+        }
+      );
+  }
+
+  @Override
+  public void onResume(boolean multitasking) {
+    // permissions may have been revoked while in background
+    writeAccess.invalidate();
+    super.onResume(multitasking);
+  }
+
+  @Override
+  public void onDestroy() {
+    documentCache.clear();
+    pathCache.clear();
+    watchService.shutdown();
+    super.onDestroy();
   }
 
   public boolean execute(
@@ -105,11 +152,28 @@ public class SDcard extends CordovaPlugin {
       case "read":
         readFile(arg1, callback);
         break;
+      case "read stream":
+        readStream(formatUri(arg1), arg2, args.optJSONObject(2), callback);
+        break;
+      case "cancel task":
+        cancelTask(arg1);
+        callback.success();
+        break;
       case "write":
         writeFile(
           formatUri(arg1),
           args.optString(1),
           args.optBoolean(2),
+          false,
+          callback
+        );
+        break;
+      case "write file":
+        writeFile(
+          formatUri(arg1),
+          args.optString(1),
+          args.optBoolean(2),
+          true,
           callback
         );
         break;
@@ -120,10 +184,10 @@ public class SDcard extends CordovaPlugin {
         delete(formatUri(arg1), callback);
         break;
       case "copy":
-        copy(arg1, arg2, callback);
+        copy(arg1, arg2, args.optJSONObject(2), callback);
         break;
       case "move":
-        move(arg1, arg2, callback);
+        move(arg1, arg2, args.optJSONObject(2), callback);
         break;
       case "get path":
         getPath(formatUri(arg1), arg2, callback);
@@ -135,24 +199,43 @@ public class SDcard extends CordovaPlugin {
         callback.success(formatUri(arg1));
         break;
       case "list directory":
+        arg2 = null;
         if (arg1.contains(SEPARATOR)) {
           String splittedStr[] = arg1.split(SEPARATOR, 2);
           arg1 = splittedStr[0];
           arg2 = splittedStr[1];
         }
 
-        listDir(arg1, arg2, callback);
+        listDir(arg1, arg2, args.optJSONObject(1), callback);
 
         break;
       case "stats":
         getStats(arg1, callback);
         break;
+      case "stats many":
+        getStatsMany(args.getJSONArray(0), callback);
+        break;
       case "watch file":
-        watchFile(arg1, arg2, callback);
+        watchFile(arg1, arg2, args.optJSONObject(2), callback);
         break;
       case "unwatch file":
         unwatchFile(arg1);
         break;
+      case "walk tree":
+        walkTree(arg1, arg2, args.optJSONObject(2), callback);
+        break;
+      case "search":
+        search(arg1, arg2, arg3, args.optJSONObject(3), callback);
+        break;
+      case "cache stats":
+        getCacheStats(callback);
+        break;
+      case "clear cache":
+        documentCache.clear();
+        pathCache.clear();
+        writeAccess.invalidate();
+        callback.success();
+        break;
       default:
         return false;
     }
@@ -174,42 +257,22 @@ public class SDcard extends CordovaPlugin {
     }
   }
 
+  /**
+   * Watches a file, or a directory tree, and sends batches of {path, kind}
+   * with keep callback. Options: recursive and debounce (ms).
+   */
   private void watchFile(
-    final String fileUri,
-    final String id,
-    final CallbackContext listener
+    String fileUri,
+    String id,
+    JSONObject options,
+    CallbackContext listener
   ) {
-    activity.runOnUiThread(
-      new Runnable() {
-        @Override
-        public void run() {
-          MyFileObserver observer;
-          Uri uri = Uri.parse(fileUri);
-          File file = new File(uri.getPath());
-
-          if (!file.exists()) {
-            listener.error("File not found");
-            return;
-          }
-
-          if (SDK_INT >= 29) {
-            observer = new MyFileObserver(file, listener);
-          } else {
-            observer = new MyFileObserver(fileUri, listener);
-          }
-
-          observer.startObserving();
-          fileObservers.put(id, observer);
-        }
-      }
-    );
+    Uri uri = Uri.parse(fileUri);
+    watchService.watch(id, new File(uri.getPath()), options, listener);
   }
 
   private void unwatchFile(String id) {
-    MyFileObserver observer = fileObservers.get(id);
-    if (observer == null) return;
-    observer.stopObserving();
-    fileObservers.remove(id);
+    watchService.unwatch(id);
   }
 
   public void openDocumentFile(String mimeType, CallbackContext callback) {
@@ -401,7 +464,7 @@ public class SDcard extends CordovaPlugin {
 
         takePermission(uri);
         DocumentFile file = DocumentFile.fromTreeUri(context, uri);
-        if (file != null && file.canWrite()) {
+        if (file != null && canWrite(file.getUri())) {
           activityResultCallback.success(uri.toString());
         } else {
           activityResultCallback.error(
@@ -422,74 +485,218 @@ public class SDcard extends CordovaPlugin {
       .execute(
         new Runnable() {
           public void run() {
+            try {
+              callback.success(
+                LocalRead.readBytes(context, Uri.parse(filename))
+              );
+            } catch (Exception e) {
+              callback.error(e.toString());
+            }
+          }
+        }
+      );
+  }
+
+  /**
+   * Reads a file in chunks. Each chunk is sent as an ArrayBuffer with keep
+   * callback, preceded by a "start" event and followed by an "end" event.
+   * Options: offset (bytes to skip), length (max bytes to read, -1 for all)
+   * and chunkSize.
+   */
+  private void readStream(
+    final String filename,
+    final String id,
+    final JSONObject options,
+    final CallbackContext callback
+  ) {
+    final long offset = options == null
+      ? 0
+      : Math.max(0, options.optLong("offset", 0));
+    final long length = options == null ? -1 : options.optLong("length", -1);
+    final int chunkSize = options == null
+      ? DEFAULT_CHUNK_SIZE
+      : Math.max(4096, options.optInt("chunkSize", DEFAULT_CHUNK_SIZE));
+    final AtomicBoolean cancelled = new AtomicBoolean(false);
+
+    if (id != null) tasks.put(id, cancelled);
+
+    cordova
+      .getThreadPool()
+      .execute(
+        new Runnable() {
+          public void run() {
+            InputStream is = null;
             try {
               Uri uri = Uri.parse(filename);
-              InputStream is = context
-                .getContentResolver()
-                .openInputStream(uri);
+              long size = -1;
+              ParcelFileDescriptor pfd = null;
+
+              try {
+                pfd = context.getContentResolver().openFileDescriptor(uri, "r");
+              } catch (FileNotFoundException | SecurityException e) {
+                throw e;
+              } catch (Exception ignored) {
+                // provider does not hand out descriptors, use a plain stream
+              }
+
+              if (pfd != null) {
+                size = pfd.getStatSize();
+                FileInputStream fis = new ParcelFileDescriptor.AutoCloseInputStream(
+                  pfd
+                );
+                is = fis;
+                if (offset > 0 && size >= 0) {
+                  fis.getChannel().position(offset);
+                } else if (offset > 0) {
+                  skipFully(is, offset);
+                }
+              } else {
+                is = context.getContentResolver().openInputStream(uri);
+                if (is != null && offset > 0) skipFully(is, offset);
+              }
 
               if (is == null) {
                 callback.error("File not found");
                 return;
               }
-              ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-              final int bufferSize = 1024;
-              byte[] buffer = new byte[bufferSize];
-              int bytesRead = 0;
-              while ((bytesRead = is.read(buffer, 0, bufferSize)) != -1) {
-                outputStream.write(buffer, 0, bytesRead);
+
+              JSONObject start = new JSONObject();
+              start.put("type", "start");
+              start.put("offset", offset);
+              start.put("size", size);
+              PluginResult startResult = new PluginResult(
+                PluginResult.Status.OK,
+                start
+              );
+              startResult.setKeepCallback(true);
+              callback.sendPluginResult(startResult);
+
+              byte[] buffer = new byte[chunkSize];
+              long remaining = length < 0 ? Long.MAX_VALUE : length;
+              long bytesRead = 0;
+
+              while (remaining > 0) {
+                if (cancelled.get()) {
+                  callback.error("Operation cancelled");
+                  return;
+                }
+
+                int toRead = (int) Math.min(buffer.length, remaining);
+                int filled = 0;
+                int read = 0;
+                while (
+                  filled < toRead &&
+                  (read = is.read(buffer, filled, toRead - filled)) != -1
+                ) {
+                  filled += read;
+                }
+
+                if (filled > 0) {
+                  byte[] chunk = filled == buffer.length
+                    ? buffer
+                    : Arrays.copyOf(buffer, filled);
+                  PluginResult result = new PluginResult(
+                    PluginResult.Status.OK,
+                    chunk
+                  );
+                  result.setKeepCallback(true);
+                  callback.sendPluginResult(result);
+                  bytesRead += filled;
+                  remaining -= filled;
+                }
+
+                if (read == -1) break;
               }
-              is.close();
-              callback.success(outputStream.toByteArray());
+
+              JSONObject end = new JSONObject();
+              end.put("type", "end");
+              end.put("bytesRead", bytesRead);
+              end.put("size", size);
+              callback.success(end);
             } catch (Exception e) {
               callback.error(e.toString());
+            } finally {
+              if (id != null) tasks.remove(id);
+              if (is != null) {
+                try {
+                  is.close();
+                } catch (IOException ignored) {}
+              }
             }
           }
         }
       );
   }
 
+  private void cancelTask(String id) {
+    if (id == null) return;
+    AtomicBoolean cancelled = tasks.get(id);
+    if (cancelled != null) cancelled.set(true);
+  }
+
+  private void skipFully(InputStream is, long count) throws IOException {
+    byte[] scratch = null;
+    while (count > 0) {
+      long skipped = is.skip(count);
+      if (skipped > 0) {
+        count -= skipped;
+        continue;
+      }
+
+      // some streams refuse to skip, fall back to reading
+      if (scratch == null) scratch = new byte[8192];
+      int read = is.read(scratch, 0, (int) Math.min(scratch.length, count));
+      if (read == -1) return;
+      count -= read;
+    }
+  }
+
   private void writeFile(
     final String filename,
     final String content,
     final Boolean isArrayBuffer,
+    final boolean report,
     final CallbackContext callback
   ) {
-    final Context context = this.context;
-
     cordova
       .getThreadPool()
       .execute(
         new Runnable() {
           public void run() {
             try {
-              DocumentFile file = getFile(filename);
-              if (file == null) {
+              long start = System.nanoTime();
+              byte[] bytes = isArrayBuffer
+                ? Base64.decode(content, Base64.DEFAULT)
+                : content.getBytes(StandardCharsets.UTF_8);
+
+              Uri uri = Uri.parse(filename);
+              if (
+                "file".equalsIgnoreCase(uri.getScheme()) &&
+                !new File(uri.getPath()).isFile()
+              ) {
                 callback.error("File not found.");
                 return;
               }
-              if (canWrite(file.getUri())) {
-                OutputStream op = context
-                  .getContentResolver()
-                  .openOutputStream(file.getUri(), "rwt");
 
-                PrintWriter pw = new PrintWriter(op, true);
+              writeBytes(uri, bytes);
+              // cached listings hold length and last modified of the file
+              invalidateDocument(uri);
 
-                if (isArrayBuffer) {
-                  byte[] bytes = Base64.decode(content, Base64.DEFAULT);
-                  // write bytes to file
-                  op.write(bytes);
-                } else {
-                  pw.print(content);
-                }
-
-                pw.flush();
-                pw.close();
-                op.close();
+              if (!report) {
                 callback.success("OK");
-              } else {
-                callback.error("No write permission");
+                return;
               }
+
+              JSONObject result = new JSONObject();
+              result.put("bytesWritten", bytes.length);
+              result.put(
+                "elapsed",
+                (System.nanoTime() - start) / 1000000
+              );
+              result.put("url", filename);
+              callback.success(result);
+            } catch (SecurityException e) {
+              callback.error("No write permission");
             } catch (Exception e) {
               callback.error(e.toString());
             }
@@ -498,6 +705,111 @@ public class SDcard extends CordovaPlugin {
       );
   }
 
+  /**
+   * Writes bytes so that the old content is never truncated before the new
+   * content is in place. Local files are written to a sibling temp file and
+   * renamed over the original, which is atomic. Documents can't be renamed
+   * over, so they are overwritten in place through their file descriptor
+   * and truncated only after the write: this is not atomic, a crash midway
+   * leaves new bytes over the start of the old content, but never an empty
+   * or shortened file.
+   */
+  private void writeBytes(Uri uri, byte[] bytes) throws IOException {
+    if ("file".equalsIgnoreCase(uri.getScheme())) {
+      writeFileAtomically(new File(uri.getPath()), bytes);
+      return;
+    }
+
+    ContentResolver contentResolver = context.getContentResolver();
+    ParcelFileDescriptor pfd = null;
+
+    try {
+      pfd = contentResolver.openFileDescriptor(uri, "rw");
+    } catch (SecurityException e) {
+      throw e;
+    } catch (Exception ignored) {
+      // provider doesn't support "rw", fall back to truncating stream below
+    }
+
+    if (pfd != null && pfd.getStatSize() < 0) {
+      // not a seekable file (e.g. a pipe), positional writes won't work
+      pfd.close();
+      pfd = null;
+    }
+
+    if (pfd == null) {
+      OutputStream os = contentResolver.openOutputStream(uri, "wt");
+      if (os == null) throw new FileNotFoundException("File not found.");
+      try {
+        os.write(bytes);
+        os.flush();
+      } finally {
+        os.close();
+      }
+      return;
+    }
+
+    try (
+      FileOutputStream fos = new FileOutputStream(pfd.getFileDescriptor());
+      FileChannel channel = fos.getChannel()
+    ) {
+      writeFully(channel, bytes);
+      channel.truncate(bytes.length);
+      channel.force(true);
+    } finally {
+      pfd.close();
+    }
+  }
+
+  private void writeFileAtomically(File file, byte[] bytes)
+    throws IOException {
+    File temp = File.createTempFile(
+      "." + file.getName() + ".",
+      ".tmp",
+      file.getParentFile()
+    );
+
+    try {
+      try (
+        FileOutputStream fos = new FileOutputStream(temp);
+        FileChannel channel = fos.getChannel()
+      ) {
+        writeFully(channel, bytes);
+        channel.force(true);
+      }
+
+      copyMode(file, temp);
+      if (!temp.renameTo(file)) {
+        throw new IOException("Unable to replace " + file.getAbsolutePath());
+      }
+    } finally {
+      if (temp.exists()) temp.delete();
+    }
+  }
+
+  /**
+   * Gives temp the permission bits of file, so replacing it keeps its mode.
+   */
+  private void copyMode(File file, File temp) {
+    try {
+      Os.chmod(
+        temp.getAbsolutePath(),
+        Os.stat(file.getAbsolutePath()).st_mode & 07777
+      );
+    } catch (ErrnoException e) {
+      // filesystem without modes (fuse, sdcardfs)
+    }
+  }
+
+  private void writeFully(FileChannel channel, byte[] bytes)
+    throws IOException {
+    ByteBuffer buffer = ByteBuffer.wrap(bytes);
+    long position = 0;
+    while (buffer.hasRemaining()) {
+      position += channel.write(buffer, position);
+    }
+  }
+
   private void createDir(String parent, String name, CallbackContext callback) {
     create(parent, name, Document.MIME_TYPE_DIR, callback);
   }
@@ -553,6 +865,7 @@ public class SDcard extends CordovaPlugin {
                 mimeType,
                 name
               );
+              documentCache.invalidate(srcUri, docId);
               DocumentFile file = DocumentFile.fromTreeUri(
                 context,
                 newDocumentUri
@@ -606,7 +919,10 @@ public class SDcard extends CordovaPlugin {
                 file.renameTo(newFile + "_temp");
               }
 
-              if (file.renameTo(newFile)) {
+              boolean renamed = file.renameTo(newFile);
+              invalidateDocument(fileUri);
+
+              if (renamed) {
                 String name = file.getName();
                 docId = DocumentsContract.getDocumentId(file.getUri());
                 callback.success(srcUri + SEPARATOR + docId);
@@ -637,6 +953,7 @@ public class SDcard extends CordovaPlugin {
                 contentResolver,
                 fileUri
               );
+              invalidateDocument(fileUri);
 
               if (fileDeleted) {
                 callback.success(filename);
@@ -651,12 +968,29 @@ public class SDcard extends CordovaPlugin {
       );
   }
 
-  private void move(String src, String dest, final CallbackContext callback) {
+  /**
+   * Moves a file or directory into dest. Tries the provider's own move
+   * first, and falls back to copy and delete when the provider can't move
+   * (e.g. across volumes). The fallback keeps a journal so an interrupted
+   * move resumes where it stopped. Takes the same options as copy.
+   */
+  private void move(
+    final String src,
+    final String dest,
+    final JSONObject options,
+    final CallbackContext callback
+  ) {
     final ContentResolver contentResolver = this.context.getContentResolver();
     final String splittedStr[] = src.split(SEPARATOR, 2);
-    final String rootUri = splittedStr[0];
+    final String srcRoot = splittedStr[0];
     final String srcId = splittedStr[1];
-    final String destId = dest.split(SEPARATOR, 2)[1];
+    final String destSplittedStr[] = dest.split(SEPARATOR, 2);
+    final String destRoot = destSplittedStr[0];
+    final String destId = destSplittedStr[1];
+    final String id = options == null ? null : options.optString("id", null);
+    final AtomicBoolean cancelled = new AtomicBoolean(false);
+
+    if (id != null) tasks.put(id, cancelled);
 
     cordova
       .getThreadPool()
@@ -664,31 +998,164 @@ public class SDcard extends CordovaPlugin {
         new Runnable() {
           @Override
           public void run() {
+            MoveJournal journal = null;
             try {
-              Uri newUri = copy(rootUri, srcId, destId);
-              if (newUri == null) callback.error("Unable to copy " + src);
-              else {
-                DocumentsContract.deleteDocument(
-                  contentResolver,
-                  getUri(rootUri, srcId)
-                );
-                callback.success(
-                  rootUri + SEPARATOR + DocumentsContract.getDocumentId(newUri)
+              journal =
+                MoveJournal.open(
+                  new File(context.getFilesDir(), MOVE_JOURNAL_DIR),
+                  src,
+                  dest
                 );
+
+              Uri newUri = null;
+              if (journal.isResuming() && !documentExists(srcRoot, srcId)) {
+                // the source is deleted only after a complete copy, so the
+                // move finished and was cut short before the journal went
+                Uri target = journal.getTarget();
+                journal.delete();
+                if (!documentExists(target)) {
+                  throw new FileNotFoundException("File not found.");
+                }
+                newUri = target;
+              } else if (!journal.isResuming()) {
+                newUri = moveDocument(srcRoot, srcId, destRoot, destId);
               }
+
+              if (newUri == null) {
+                newUri =
+                  copy(
+                    srcRoot,
+                    srcId,
+                    destRoot,
+                    destId,
+                    options,
+                    cancelled,
+                    callback,
+                    journal
+                  );
+
+                if (
+                  !DocumentsContract.deleteDocument(
+                    contentResolver,
+                    getUri(srcRoot, srcId)
+                  )
+                ) {
+                  throw new IOException("Unable to delete " + src);
+                }
+              }
+
+              journal.delete();
+              callback.success(
+                destRoot + SEPARATOR + DocumentsContract.getDocumentId(newUri)
+              );
+            } catch (CancellationException e) {
+              callback.error("Operation cancelled");
             } catch (Exception e) {
               callback.error(e.toString());
+            } finally {
+              if (journal != null) journal.close();
+              invalidateDocument(srcId);
+              invalidateDocument(destId);
+              if (id != null) tasks.remove(id);
             }
           }
         }
       );
   }
 
-  private void copy(String src, String dest, final CallbackContext callback) {
+  /**
+   * Moves using DocumentsContract.moveDocument, returns null if the
+   * provider can't do it so the caller can fall back to copy and delete.
+   */
+  private Uri moveDocument(
+    String srcRoot,
+    String srcId,
+    String destRoot,
+    String destId
+  ) {
+    if (SDK_INT < 24) return null;
+
+    Uri srcUri = getUri(srcRoot, srcId);
+    Uri destUri = getUri(destRoot, destId);
+    if (!srcUri.getAuthority().equals(destUri.getAuthority())) return null;
+
+    String parentId = findParentId(srcUri);
+    if (parentId == null) return null;
+
+    try {
+      return DocumentsContract.moveDocument(
+        context.getContentResolver(),
+        srcUri,
+        getUri(srcRoot, parentId),
+        destUri
+      );
+    } catch (Exception e) {
+      Log.d("SDcard", "moveDocument not supported, copying instead", e);
+      return null;
+    }
+  }
+
+  private boolean documentExists(String root, String docId) {
+    return documentExists(getUri(root, docId));
+  }
+
+  private boolean documentExists(Uri documentUri) {
+    try (
+      Cursor cursor = context
+        .getContentResolver()
+        .query(
+          documentUri,
+          new String[] { Document.COLUMN_DOCUMENT_ID },
+          null,
+          null,
+          null
+        )
+    ) {
+      return cursor != null && cursor.moveToFirst();
+    } catch (Exception e) {
+      return false;
+    }
+  }
+
+  private String findParentId(Uri documentUri) {
+    if (SDK_INT < 26) return null;
+
+    try {
+      DocumentsContract.Path path = DocumentsContract.findDocumentPath(
+        context.getContentResolver(),
+        documentUri
+      );
+      if (path == null) return null;
+
+      List<String> ids = path.getPath();
+      if (ids.size() < 2) return null;
+      return ids.get(ids.size() - 2);
+    } catch (Exception e) {
+      return null;
+    }
+  }
+
+  /**
+   * Copies a file or directory into dest. Options: id (to cancel with
+   * "cancel task"), progress (send progress events with keep callback),
+   * conflict (rename, overwrite, skip or fail) and threads.
+   */
+  private void copy(
+    String src,
+    String dest,
+    final JSONObject options,
+    final CallbackContext callback
+  ) {
     final String splittedStr[] = src.split(SEPARATOR, 2);
     final String srcUri = splittedStr[0];
     final String srcId = splittedStr[1];
-    final String destId = dest.split(SEPARATOR, 2)[1];
+    final String destSplittedStr[] = dest.split(SEPARATOR, 2);
+    final String destUri = destSplittedStr[0];
+    final String destId = destSplittedStr[1];
+    final String id = options == null ? null : options.optString("id", null);
+    final AtomicBoolean cancelled = new AtomicBoolean(false);
+
+    if (id != null) tasks.put(id, cancelled);
 
     cordova
       .getThreadPool()
@@ -697,133 +1164,119 @@ public class SDcard extends CordovaPlugin {
           @Override
           public void run() {
             try {
-              Uri newUri = copy(srcUri, srcId, destId);
-              if (newUri == null) {
-                callback.error("Unable to copy " + src);
-              } else {
-                callback.success(
-                  srcUri + SEPARATOR + DocumentsContract.getDocumentId(newUri)
-                );
-              }
+              Uri newUri = copy(
+                srcUri,
+                srcId,
+                destUri,
+                destId,
+                options,
+                cancelled,
+                callback,
+                null
+              );
+              callback.success(
+                destUri + SEPARATOR + DocumentsContract.getDocumentId(newUri)
+              );
+            } catch (CancellationException e) {
+              callback.error("Operation cancelled");
             } catch (Exception e) {
               callback.error(e.toString());
+            } finally {
+              invalidateDocument(destId);
+              if (id != null) tasks.remove(id);
             }
           }
         }
       );
   }
 
-  private Uri copy(String root, String srcId, String destId)
-    throws IOException, FileNotFoundException {
-    Uri srcUri = getUri(root, srcId);
-    Uri destUri = getUri(root, destId);
-    DocumentFile src = getFile(srcUri);
-    DocumentFile dest = getFile(destUri);
-    ContentResolver contentResolver = context.getContentResolver();
-
-    if (src.isFile()) {
-      Uri newUri = copyFile(src, dest);
-      if (newUri == null) return null;
-      else return newUri;
-    } else {
-      destUri = DocumentsContract.createDocument(
-        contentResolver,
-        destUri,
-        Document.MIME_TYPE_DIR,
-        src.getName()
-      );
-      destId = DocumentsContract.getDocumentId(destUri);
-
-      Uri childrenUri = DocumentsContract.buildChildDocumentsUriUsingTree(
-        Uri.parse(root),
-        srcId
-      );
-      Cursor c = contentResolver.query(
-        childrenUri,
-        new String[] { Document.COLUMN_DOCUMENT_ID },
-        null,
-        null,
-        null
-      );
-      if (c != null) {
-        while (c.moveToNext()) {
-          String docId = c.getString(0);
-          copy(root, docId, destId);
-        }
-        c.close();
-        return destUri;
-      } else {
-        DocumentsContract.deleteDocument(contentResolver, destUri);
-        return null;
-      }
+  private Uri copy(
+    final String srcRoot,
+    String srcId,
+    final String destRoot,
+    String destId,
+    JSONObject options,
+    AtomicBoolean cancelled,
+    final CallbackContext callback,
+    MoveJournal journal
+  ) throws Exception {
+    CopyEngine.Listener listener = null;
+
+    if (options != null && options.optBoolean("progress")) {
+      listener =
+        new CopyEngine.Listener() {
+          @Override
+          public void onProgress(JSONObject progress) {
+            PluginResult result = new PluginResult(
+              PluginResult.Status.OK,
+              progress
+            );
+            result.setKeepCallback(true);
+            callback.sendPluginResult(result);
+          }
+        };
     }
-  }
-
-  private Uri copyFile(DocumentFile src, DocumentFile dest)
-    throws IOException, FileNotFoundException {
-    ContentResolver contentResolver = this.context.getContentResolver();
 
-    Uri newFileUri = DocumentsContract.createDocument(
-      contentResolver,
-      dest.getUri(),
-      src.getType(),
-      src.getName()
+    CopyEngine engine = new CopyEngine(
+      context.getContentResolver(),
+      Uri.parse(srcRoot),
+      new TreeWalker.ChildLister() {
+        @Override
+        public List<DocumentCache.Row> list(String parentDocId) {
+          return listChildren(srcRoot, parentDocId, false);
+        }
+      },
+      Uri.parse(destRoot),
+      new TreeWalker.ChildLister() {
+        @Override
+        public List<DocumentCache.Row> list(String parentDocId) {
+          // destination changes while copying, don't trust the cache
+          return listChildren(destRoot, parentDocId, true);
+        }
+      },
+      options,
+      cancelled,
+      listener
     );
-    DocumentFile newFile = getFile(newFileUri);
-    InputStream is = contentResolver.openInputStream(src.getUri());
-    OutputStream os = contentResolver.openOutputStream(newFile.getUri(), "rwt");
-
-    if (is == null || os == null) {
-      DocumentsContract.deleteDocument(contentResolver, newFileUri);
-      return null;
-    }
 
-    IOUtils.copy(is, os);
-
-    is.close();
-    os.close();
-
-    if (src.length() == newFile.length()) return newFile.getUri();
-    else {
-      DocumentsContract.deleteDocument(contentResolver, newFileUri);
-      return null;
-    }
+    if (journal != null) engine.setJournal(journal);
+    return engine.copy(srcId, destId);
   }
 
-  private void listDir(String src, String parentId, CallbackContext callback) {
+  /**
+   * Lists children of a directory in a single query. Options: detailed adds
+   * length, lastModified and permission flags to each entry, offset and limit
+   * page through large directories, refresh bypasses the listing cache.
+   */
+  private void listDir(
+    String src,
+    String parentId,
+    JSONObject options,
+    CallbackContext callback
+  ) {
+    final boolean detailed = options != null && options.optBoolean("detailed");
+    final boolean refresh = options != null && options.optBoolean("refresh");
+    final int offset = options == null
+      ? 0
+      : Math.max(0, options.optInt("offset", 0));
+    final int limit = options == null ? -1 : options.optInt("limit", -1);
+
     cordova
       .getThreadPool()
       .execute(
         new Runnable() {
           public void run() {
             Uri srcUri = Uri.parse(src);
-            ContentResolver contentResolver = context.getContentResolver();
             String parentDocId = parentId;
 
             if (parentDocId == null) {
               parentDocId = DocumentsContract.getTreeDocumentId(srcUri);
             }
 
-            Uri childrenUri = DocumentsContract.buildChildDocumentsUriUsingTree(
-              srcUri,
-              parentDocId
-            );
-
-            JSONArray result = new JSONArray();
-            Cursor cursor = null;
+            List<DocumentCache.Row> rows;
 
             try {
-              cursor = contentResolver.query(
-                childrenUri,
-                new String[] {
-                  Document.COLUMN_DOCUMENT_ID,
-                  Document.COLUMN_DISPLAY_NAME,
-                  Document.COLUMN_MIME_TYPE,
-                },
-                null,
-                null,
-                null
-              );
+              rows = listChildren(src, parentDocId, refresh);
             } catch (
               NullPointerException
               | SecurityException
@@ -836,47 +1289,386 @@ public class SDcard extends CordovaPlugin {
               return;
             }
 
-            if (cursor == null) {
+            if (rows == null) {
               callback.error("Cannot read directory.");
               return;
             }
 
             try {
-              while (cursor.moveToNext()) {
+              JSONArray result = new JSONArray();
+              int end = limit < 0
+                ? rows.size()
+                : (int) Math.min(rows.size(), (long) offset + limit);
+
+              for (int i = offset; i < end; i++) {
+                DocumentCache.Row row = rows.get(i);
                 JSONObject fileData = new JSONObject();
-                String docId = cursor.getString(0);
-                String name = cursor.getString(1);
-                String mime = cursor.getString(2);
-                boolean isDirectory = isDirectory(mime);
+                boolean isDirectory = isDirectory(row.mime);
 
-                fileData.put("name", name);
-                fileData.put("mime", mime);
+                fileData.put("name", row.name);
+                fileData.put("mime", row.mime);
                 fileData.put("isDirectory", isDirectory);
                 fileData.put("isFile", !isDirectory);
-                fileData.put("uri", src + SEPARATOR + docId); // TODO: Deprecate in future
-                fileData.put("url", src + SEPARATOR + docId);
+                fileData.put("uri", src + SEPARATOR + row.docId); // TODO: Deprecate in future
+                fileData.put("url", src + SEPARATOR + row.docId);
+
+                if (detailed) {
+                  int writeFlag = isDirectory
+                    ? Document.FLAG_DIR_SUPPORTS_CREATE
+                    : Document.FLAG_SUPPORTS_WRITE;
+
+                  fileData.put("length", row.size);
+                  fileData.put("lastModified", row.lastModified);
+                  fileData.put("canWrite", (row.flags & writeFlag) != 0);
+                  fileData.put(
+                    "canDelete",
+                    (row.flags & Document.FLAG_SUPPORTS_DELETE) != 0
+                  );
+                  fileData.put(
+                    "canRename",
+                    (row.flags & Document.FLAG_SUPPORTS_RENAME) != 0
+                  );
+                }
+
                 result.put(fileData);
               }
 
               callback.success(result);
             } catch (JSONException e) {
               callback.error(e.toString());
+            }
+          }
+        }
+      );
+  }
+
+  /**
+   * Lists children of a directory through the listing cache, returns null if
+   * provider returned no cursor.
+   */
+  private List<DocumentCache.Row> listChildren(
+    String src,
+    String parentDocId,
+    boolean refresh
+  ) {
+    List<DocumentCache.Row> rows = refresh
+      ? null
+      : documentCache.get(src, parentDocId);
+    if (rows != null) return rows;
+
+    long generation = documentCache.generation();
+    Uri childrenUri = DocumentsContract.buildChildDocumentsUriUsingTree(
+      Uri.parse(src),
+      parentDocId
+    );
+
+    rows = queryChildren(childrenUri);
+    if (rows != null) {
+      documentCache.put(src, parentDocId, childrenUri, rows, generation);
+    }
+    return rows;
+  }
+
+  /**
+   * Walks a tree breadth first and streams entries back in batches with keep
+   * callback, finishing with a summary. Options: maxDepth, ignore (globs),
+   * batchSize and threads.
+   */
+  private void walkTree(
+    String src,
+    final String id,
+    final JSONObject options,
+    final CallbackContext callback
+  ) {
+    String parentId = null;
+    if (src.contains(SEPARATOR)) {
+      String splittedStr[] = src.split(SEPARATOR, 2);
+      src = splittedStr[0];
+      parentId = splittedStr[1];
+    }
+
+    final String tree = src;
+    final String rootId = parentId;
+    final AtomicBoolean cancelled = new AtomicBoolean(false);
+
+    if (id != null) tasks.put(id, cancelled);
+
+    cordova
+      .getThreadPool()
+      .execute(
+        new Runnable() {
+          public void run() {
+            try {
+              String rootDocId = rootId;
+              if (rootDocId == null) {
+                rootDocId = DocumentsContract.getTreeDocumentId(
+                  Uri.parse(tree)
+                );
+              }
+
+              TreeWalker walker = new TreeWalker(
+                tree,
+                new TreeWalker.ChildLister() {
+                  @Override
+                  public List<DocumentCache.Row> list(String parentDocId) {
+                    return listChildren(tree, parentDocId, false);
+                  }
+                },
+                options,
+                cancelled
+              );
+
+              JSONObject summary = walker.walk(
+                rootDocId,
+                new TreeWalker.Listener() {
+                  @Override
+                  public void onBatch(JSONArray batch) {
+                    PluginResult result = new PluginResult(
+                      PluginResult.Status.OK,
+                      batch
+                    );
+                    result.setKeepCallback(true);
+                    callback.sendPluginResult(result);
+                  }
+                }
+              );
+
+              callback.success(summary);
+            } catch (CancellationException e) {
+              callback.error("Operation cancelled");
+            } catch (Exception e) {
+              callback.error(e.toString());
             } finally {
-              if (cursor != null) {
-                try {
-                  cursor.close();
-                } catch (RuntimeException re) {
-                  throw re;
-                } catch (Exception ignore) {
-                  // ignore exception
+              if (id != null) tasks.remove(id);
+            }
+          }
+        }
+      );
+  }
+
+  /**
+   * Searches the files of a SAF or file:// tree for query and streams
+   * batches of matches with keep callback, finishing with a summary. See
+   * TextSearch for options.
+   */
+  private void search(
+    String src,
+    final String id,
+    final String query,
+    final JSONObject options,
+    final CallbackContext callback
+  ) {
+    final AtomicBoolean cancelled = new AtomicBoolean(false);
+
+    if (id != null) tasks.put(id, cancelled);
+
+    cordova
+      .getThreadPool()
+      .execute(
+        new Runnable() {
+          public void run() {
+            try {
+              String tree = null, rootDocId;
+              TreeWalker.ChildLister lister;
+
+              if (src.startsWith("file://")) {
+                rootDocId = Uri.fromFile(
+                  new File(Uri.parse(src).getPath())
+                ).toString();
+                lister = TreeWalker.FILES;
+              } else {
+                if (src.contains(SEPARATOR)) {
+                  String splittedStr[] = src.split(SEPARATOR, 2);
+                  tree = splittedStr[0];
+                  rootDocId = splittedStr[1];
+                } else {
+                  tree = src;
+                  rootDocId = DocumentsContract.getTreeDocumentId(
+                    Uri.parse(tree)
+                  );
                 }
+
+                final String root = tree;
+                lister =
+                  new TreeWalker.ChildLister() {
+                    @Override
+                    public List<DocumentCache.Row> list(String parentDocId) {
+                      return listChildren(root, parentDocId, false);
+                    }
+                  };
               }
+
+              TextSearch search = new TextSearch(
+                context.getContentResolver(),
+                query,
+                options,
+                cancelled
+              );
+
+              JSONObject summary = search.search(
+                tree,
+                lister,
+                rootDocId,
+                new TextSearch.Listener() {
+                  @Override
+                  public void onMatches(JSONArray matches) {
+                    PluginResult result = new PluginResult(
+                      PluginResult.Status.OK,
+                      matches
+                    );
+                    result.setKeepCallback(true);
+                    callback.sendPluginResult(result);
+                  }
+                }
+              );
+
+              callback.success(summary);
+            } catch (CancellationException e) {
+              callback.error("Operation cancelled");
+            } catch (Exception e) {
+              callback.error(e.toString());
+            } finally {
+              if (id != null) tasks.remove(id);
             }
           }
         }
       );
   }
 
+  /**
+   * Queries children of a directory, returns null if provider returned no
+   * cursor.
+   */
+  private List<DocumentCache.Row> queryChildren(Uri childrenUri) {
+    Cursor cursor = context
+      .getContentResolver()
+      .query(
+        childrenUri,
+        new String[] {
+          Document.COLUMN_DOCUMENT_ID,
+          Document.COLUMN_DISPLAY_NAME,
+          Document.COLUMN_MIME_TYPE,
+          Document.COLUMN_SIZE,
+          Document.COLUMN_LAST_MODIFIED,
+          Document.COLUMN_FLAGS,
+        },
+        null,
+        null,
+        null
+      );
+
+    if (cursor == null) return null;
+
+    List<DocumentCache.Row> rows = new ArrayList<DocumentCache.Row>(
+      cursor.getCount()
+    );
+
+    try {
+      while (cursor.moveToNext()) {
+        // size and last modified are nullable, report 0 like DocumentFile
+        rows.add(
+          new DocumentCache.Row(
+            cursor.getString(0),
+            cursor.getString(1),
+            cursor.getString(2),
+            cursor.isNull(3) ? 0 : cursor.getLong(3),
+            cursor.isNull(4) ? 0 : cursor.getLong(4),
+            cursor.isNull(5) ? 0 : cursor.getInt(5)
+          )
+        );
+      }
+    } finally {
+      try {
+        cursor.close();
+      } catch (RuntimeException re) {
+        throw re;
+      } catch (Exception ignore) {
+        // ignore exception
+      }
+    }
+
+    return rows;
+  }
+
+  /**
+   * Drops cached listings and paths that the change of uri makes stale. A
+   * file:// uri in shared storage maps to its external storage document, so
+   * the file and the listing of its parent (where it may be new) are
+   * dropped. Uris without a known document id invalidate nothing.
+   */
+  private void invalidateDocument(Uri uri) {
+    String scheme = uri.getScheme();
+    if (ContentResolver.SCHEME_FILE.equals(scheme)) {
+      String path = uri.getPath();
+      String docId = path == null ? null : externalStorageDocId(path);
+      if (docId == null) return;
+
+      invalidateDocument(docId);
+      String parentId = parentDocId(docId);
+      if (parentId != null) documentCache.invalidateListing(parentId);
+      return;
+    }
+
+    if (!ContentResolver.SCHEME_CONTENT.equals(scheme)) return;
+
+    String docId = null;
+    try {
+      docId = DocumentsContract.getDocumentId(uri);
+    } catch (IllegalArgumentException e) {
+      try {
+        docId = DocumentsContract.getTreeDocumentId(uri);
+      } catch (IllegalArgumentException ignored) {}
+    }
+
+    if (docId != null) invalidateDocument(docId);
+  }
+
+  /**
+   * Document id the external storage provider gives a local path, e.g.
+   * "primary:Download/a.txt", null outside shared storage.
+   */
+  private static String externalStorageDocId(String path) {
+    String primary = Environment.getExternalStorageDirectory().getAbsolutePath();
+    if (path.equals(primary)) return "primary:";
+    if (path.startsWith(primary + "/")) {
+      return "primary:" + path.substring(primary.length() + 1);
+    }
+
+    if (!path.startsWith("/storage/")) return null;
+    String rest = path.substring("/storage/".length());
+    int slash = rest.indexOf('/');
+    String volume = slash < 0 ? rest : rest.substring(0, slash);
+    if (volume.isEmpty() || "emulated".equals(volume) || "self".equals(volume)) {
+      return null;
+    }
+    return volume + ":" + (slash < 0 ? "" : rest.substring(slash + 1));
+  }
+
+  /**
+   * Parent of an external storage document id, null for a volume root.
+   */
+  private static String parentDocId(String docId) {
+    int colon = docId.indexOf(':');
+    if (colon < 0 || colon == docId.length() - 1) return null;
+    int slash = docId.lastIndexOf('/');
+    return slash > colon ? docId.substring(0, slash) : docId.substring(0, colon + 1);
+  }
+
+  private void invalidateDocument(String docId) {
+    documentCache.invalidateDocument(docId);
+    pathCache.invalidateDocument(docId);
+  }
+
+  private void getCacheStats(CallbackContext callback) {
+    try {
+      JSONObject stats = documentCache.getStats();
+      stats.put("paths", pathCache.getStats());
+      callback.success(stats);
+    } catch (JSONException e) {
+      callback.error(e.toString());
+    }
+  }
+
   private boolean isDirectory(String mimeType) {
     return DocumentsContract.Document.MIME_TYPE_DIR.equals(mimeType);
   }
@@ -887,33 +1679,168 @@ public class SDcard extends CordovaPlugin {
       .execute(
         new Runnable() {
           public void run() {
-            String fileUri = formatUri(filename);
+            try {
+              callback.success(stat(formatUri(filename)));
+            } catch (Exception e) {
+              callback.error(e.getMessage());
+            }
+          }
+        }
+      );
+  }
+
+  /**
+   * Stats many files in one call, on a small pool. Returns an array in the
+   * order of filenames, a file that fails has exists false and error set.
+   */
+  private void getStatsMany(
+    final JSONArray filenames,
+    final CallbackContext callback
+  ) {
+    cordova
+      .getThreadPool()
+      .execute(
+        new Runnable() {
+          public void run() {
+            int count = filenames.length();
+            ExecutorService pool = Executors.newFixedThreadPool(
+              Math.max(1, Math.min(STATS_THREADS, count))
+            );
 
             try {
-              DocumentFile file = getFile(fileUri);
+              List<Future<JSONObject>> futures = new ArrayList<Future<JSONObject>>(
+                count
+              );
 
-              JSONObject result = new JSONObject();
-              result.put("exists", file.exists());
-              result.put("canRead", file.canRead());
-              result.put("canWrite", canWrite(file.getUri()));
-              result.put("name", file.getName());
-              result.put("length", file.length());
-              result.put("type", file.getType());
-              result.put("isFile", file.isFile());
-              result.put("isDirectory", file.isDirectory());
-              result.put("isVirtual", file.isVirtual());
-              result.put("lastModified", file.lastModified());
-              result.put("url", file.getUri().toString());
+              for (int i = 0; i < count; i++) {
+                final String filename = filenames.getString(i);
+                futures.add(
+                  pool.submit(
+                    new Callable<JSONObject>() {
+                      @Override
+                      public JSONObject call() throws Exception {
+                        return stat(formatUri(filename));
+                      }
+                    }
+                  )
+                );
+              }
+
+              JSONArray result = new JSONArray();
+              for (int i = 0; i < count; i++) {
+                try {
+                  result.put(futures.get(i).get());
+                } catch (ExecutionException e) {
+                  JSONObject failed = new JSONObject();
+                  failed.put("exists", false);
+                  failed.put("url", filenames.getString(i));
+                  failed.put("error", e.getCause().toString());
+                  result.put(failed);
+                }
+              }
 
               callback.success(result);
             } catch (Exception e) {
-              callback.error(e.getMessage());
+              callback.error(e.toString());
+            } finally {
+              pool.shutdown();
             }
           }
         }
       );
   }
 
+  /**
+   * Stats a file. Content uris are stated with a single query, DocumentFile
+   * would query the provider once per property.
+   */
+  private JSONObject stat(String fileUri) throws JSONException {
+    DocumentFile file = getFile(fileUri);
+    Uri uri = file.getUri();
+    JSONObject result = new JSONObject();
+
+    if (!ContentResolver.SCHEME_CONTENT.equals(uri.getScheme())) {
+      result.put("exists", file.exists());
+      result.put("canRead", file.canRead());
+      result.put("canWrite", canWrite(uri));
+      result.put("name", file.getName());
+      result.put("length", file.length());
+      result.put("type", file.getType());
+      result.put("isFile", file.isFile());
+      result.put("isDirectory", file.isDirectory());
+      result.put("isVirtual", file.isVirtual());
+      result.put("lastModified", file.lastModified());
+      result.put("url", uri.toString());
+      return result;
+    }
+
+    boolean exists = false, hasFlags = false;
+    String name = null, mime = null;
+    long length = 0, lastModified = 0;
+    int flags = 0;
+    Cursor cursor = null;
+
+    try {
+      cursor =
+        context
+          .getContentResolver()
+          .query(
+            uri,
+            new String[] {
+              Document.COLUMN_DISPLAY_NAME,
+              Document.COLUMN_MIME_TYPE,
+              Document.COLUMN_SIZE,
+              Document.COLUMN_LAST_MODIFIED,
+              Document.COLUMN_FLAGS,
+            },
+            null,
+            null,
+            null
+          );
+
+      if (cursor != null && cursor.moveToFirst()) {
+        exists = true;
+        name = cursor.getString(0);
+        mime = cursor.getString(1);
+        length = cursor.isNull(2) ? 0 : cursor.getLong(2);
+        lastModified = cursor.isNull(3) ? 0 : cursor.getLong(3);
+        hasFlags = !cursor.isNull(4);
+        flags = hasFlags ? cursor.getInt(4) : 0;
+      }
+    } catch (Exception e) {
+      // missing document, reported as not existing like DocumentFile does
+    } finally {
+      if (cursor != null) cursor.close();
+    }
+
+    boolean hasType = mime != null && !mime.isEmpty();
+    boolean isDirectory = isDirectory(mime);
+    boolean canRead =
+      hasType &&
+      context.checkCallingOrSelfUriPermission(
+        uri,
+        Intent.FLAG_GRANT_READ_URI_PERMISSION
+      ) ==
+      PackageManager.PERMISSION_GRANTED;
+
+    result.put("exists", exists);
+    result.put("canRead", canRead);
+    result.put(
+      "canWrite",
+      exists &&
+      (hasFlags ? writeAccess.canWrite(uri, mime, flags) : canWrite(uri))
+    );
+    result.put("name", name);
+    result.put("length", length);
+    result.put("type", isDirectory ? null : mime);
+    result.put("isFile", hasType && !isDirectory);
+    result.put("isDirectory", isDirectory);
+    result.put("isVirtual", (flags & Document.FLAG_VIRTUAL_DOCUMENT) != 0);
+    result.put("lastModified", lastModified);
+    result.put("url", uri.toString());
+    return result;
+  }
+
   private Uri getUri(String src, String docId) {
     Uri srcUri = Uri.parse(src);
     String srcId = DocumentsContract.getTreeDocumentId(srcUri);
@@ -939,54 +1866,126 @@ public class SDcard extends CordovaPlugin {
     callback.error("ERROR: " + err);
   }
 
-  private void getPath(String uriString, String src, CallbackContext callback) {
-    try {
-      DocumentFile file = geRelativeDocumentFile(uriString, src);
-
-      if (file == null) {
-        callback.error("Unable to get file");
-      } else {
-        Uri uri = file.getUri();
-        String path = uri.getPath();
+  private void getPath(
+    final String uriString,
+    final String src,
+    final CallbackContext callback
+  ) {
+    cordova
+      .getThreadPool()
+      .execute(
+        new Runnable() {
+          public void run() {
+            try {
+              Uri uri = resolvePath(uriString, src);
 
-        if (path != null) {
-          callback.success(uri.toString());
-        } else {
-          callback.error("Unable to get path");
+              if (uri == null) {
+                callback.error("Unable to get file");
+              } else {
+                callback.success(uri.toString());
+              }
+            } catch (Exception e) {
+              callback.error(e.getMessage());
+            }
+          }
         }
-      }
-    } catch (Exception e) {
-      callback.error(e.getMessage());
-    }
+      );
   }
 
-  private DocumentFile geRelativeDocumentFile(String uri, String filename) {
-    List<String> paths = new ArrayList<String>();
-    DocumentFile file = null;
-
-    file = DocumentFile.fromTreeUri(context, Uri.parse(uri));
-    if (!canWrite(file.getUri())) {
+  /**
+   * Resolves filename relative to a tree or a document in it, returns null if
+   * it doesn't exist. Each segment is looked up in the path cache first, then
+   * by its expected id on providers with path like ids, and only then by
+   * listing the parent.
+   */
+  private Uri resolvePath(String uriString, String filename) {
+    Uri uri = Uri.parse(uriString);
+    String treeId = DocumentsContract.getTreeDocumentId(uri);
+    String tree = DocumentsContract
+      .buildTreeDocumentUri(uri.getAuthority(), treeId)
+      .toString();
+    String docId = DocumentsContract.isDocumentUri(context, uri)
+      ? DocumentsContract.getDocumentId(uri)
+      : treeId;
+
+    Uri root = DocumentsContract.buildDocumentUriUsingTree(
+      Uri.parse(tree),
+      treeId
+    );
+    if (!canWrite(root)) {
       throw new RuntimeException("Cannot write file");
     }
 
-    paths.addAll(Arrays.asList(filename.split("/")));
+    for (String name : filename.split("/")) {
+      if (name.equals("")) continue;
 
-    while (paths.size() > 0) {
-      String path = paths.remove(0);
-      filename = TextUtils.join("/", paths);
+      String childId = pathCache.get(tree, docId, name);
+      if (childId == null) childId = findChild(tree, docId, name);
+      if (childId == null) return null;
 
-      if (!path.equals("")) {
-        file = file.findFile(path);
+      docId = childId;
+    }
 
-        if (file == null) return null;
-      }
+    return DocumentsContract.buildDocumentUriUsingTree(Uri.parse(tree), docId);
+  }
+
+  private String findChild(String tree, String parentId, String name) {
+    String expectedId = expectedChildId(tree, parentId, name);
+    if (expectedId != null && name.equals(queryName(tree, expectedId))) {
+      pathCache.put(tree, parentId, name, expectedId);
+      return expectedId;
+    }
+
+    List<DocumentCache.Row> rows = listChildren(tree, parentId, false);
+    if (rows == null) return null;
+
+    String childId = null;
+    for (DocumentCache.Row row : rows) {
+      pathCache.put(tree, parentId, row.name, row.docId);
+      if (childId == null && name.equals(row.name)) childId = row.docId;
     }
 
-    return file;
+    return childId;
   }
 
-  private DocumentFile getFile(Uri uri) {
-    return getFile(uri.toString());
+  /**
+   * External storage ids are "volume:relative/path", so a child's id can be
+   * built from its parent's and checked with a single query.
+   */
+  private String expectedChildId(String tree, String parentId, String name) {
+    if (!EXTERNAL_STORAGE_AUTHORITY.equals(Uri.parse(tree).getAuthority())) {
+      return null;
+    }
+
+    if (parentId.indexOf(':') < 0) return null;
+    if (parentId.endsWith(":") || parentId.endsWith("/")) {
+      return parentId + name;
+    }
+    return parentId + "/" + name;
+  }
+
+  private String queryName(String tree, String docId) {
+    Cursor cursor = null;
+    try {
+      cursor =
+        context
+          .getContentResolver()
+          .query(
+            DocumentsContract.buildDocumentUriUsingTree(Uri.parse(tree), docId),
+            new String[] { Document.COLUMN_DISPLAY_NAME },
+            null,
+            null,
+            null
+          );
+
+      if (cursor == null || !cursor.moveToFirst()) return null;
+      return cursor.getString(0);
+    } catch (Exception e) {
+      // missing documents throw on some providers
+      return null;
+    } finally {
+      if (cursor != null) cursor.close();
+    }
   }
 
   private DocumentFile getFile(String filePath) {
@@ -1010,60 +2009,10 @@ public class SDcard extends CordovaPlugin {
       Intent.FLAG_GRANT_WRITE_URI_PERMISSION |
       Intent.FLAG_GRANT_READ_URI_PERMISSION
     );
+    writeAccess.invalidate();
   }
 
   public boolean canWrite(Uri uri) {
-    boolean canWrite = false;
-    try {
-      // if the file is not writable this throws a SecurityException
-      OutputStream os = context
-        .getContentResolver()
-        .openOutputStream(uri, "wa");
-
-      if (os == null) return false;
-
-      os.close(); // we don't actually want to write anything, so we close immediately
-      canWrite = true;
-    } catch (
-      SecurityException | IllegalArgumentException | IOException ignored
-    ) {
-      // if we don't have write-permission or the file doesn't exist, canWrite can stay on false
-    }
-    return canWrite;
-  }
-}
-
-class MyFileObserver extends FileObserver {
-
-  private CallbackContext listener;
-  private static final int mask =
-    (FileObserver.DELETE_SELF | FileObserver.MODIFY | FileObserver.MOVE_SELF);
-
-  public MyFileObserver(String path, CallbackContext listener) {
-    super(path, mask);
-    this.listener = listener;
-    Log.d("MyFileObserver", "MyFileObserver: " + path);
-  }
-
-  public MyFileObserver(File file, CallbackContext listener) {
-    super(file, mask);
-    this.listener = listener;
-    Log.d("MyFileObserver", "MyFileObserver: " + file.getAbsolutePath());
-  }
-
-  @Override
-  public void onEvent(int event, String path) {
-    Log.d("MyFileObserver", "onEvent: " + event);
-    PluginResult result = new PluginResult(PluginResult.Status.OK);
-    result.setKeepCallback(true);
-    listener.sendPluginResult(result);
-  }
-
-  public void startObserving() {
-    startWatching();
-  }
-
-  public void stopObserving() {
-    stopWatching();
+    return writeAccess.canWrite(uri);
   }
 }
@@ -0,0 +1,334 @@
+package com.foxdebug.sdcard;
+
+import android.content.ContentResolver;
+import android.net.Uri;
+import android.provider.DocumentsContract;
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Searches the files of a tree without sending their content over the
+ * bridge. The tree is walked with TreeWalker while the files of every batch
+ * are scanned on a fork join pool, line by line, and matches are streamed
+ * to the listener in batches. Binary files (a NUL byte in the first 8000
+ * bytes, like git) are skipped. Matches don't span lines.
+ */
+class TextSearch {
+
+  private static final String SEPARATOR = "::";
+  private static final int SNIFF_SIZE = 8000;
+  private static final int BUFFER_SIZE = 64 * 1024;
+  private static final int PREVIEW_SIZE = 50;
+  private static final long FLUSH_INTERVAL = 100;
+
+  interface Listener {
+    void onMatches(JSONArray matches);
+  }
+
+  private final ContentResolver contentResolver;
+  private final Pattern pattern;
+  private final JSONObject options;
+  private final int maxResults;
+  private final long maxFileSize;
+  private final int batchSize;
+  private final int threads;
+  private final AtomicBoolean cancelled;
+  private final AtomicInteger results = new AtomicInteger();
+  private final AtomicInteger files = new AtomicInteger();
+  private final AtomicInteger errors = new AtomicInteger();
+  private volatile boolean limitReached = false;
+
+  private String tree;
+  private Listener listener;
+  private JSONArray batch = new JSONArray();
+  private long lastFlush = 0;
+
+  /**
+   * Options: regex, caseSensitive, wholeWord, maxResults (default 1000),
+   * maxFileSize (bytes, default 10MB), batchSize, threads, and ignore and
+   * maxDepth as for TreeWalker.
+   */
+  TextSearch(
+    ContentResolver contentResolver,
+    String query,
+    JSONObject options,
+    AtomicBoolean cancelled
+  ) {
+    if (options == null) options = new JSONObject();
+    this.contentResolver = contentResolver;
+    this.options = options;
+    this.cancelled = cancelled;
+    this.maxResults = options.optInt("maxResults", 1000);
+    this.maxFileSize = options.optLong("maxFileSize", 10 * 1024 * 1024);
+    this.batchSize = Math.max(1, options.optInt("batchSize", 100));
+    this.threads = Math.max(
+      1,
+      Math.min(
+        options.optInt("threads", Runtime.getRuntime().availableProcessors()),
+        Runtime.getRuntime().availableProcessors()
+      )
+    );
+
+    String source = options.optBoolean("regex")
+      ? query
+      : Pattern.quote(query);
+    if (options.optBoolean("wholeWord")) {
+      source = "\\b(?:" + source + ")\\b";
+    }
+
+    this.pattern =
+      Pattern.compile(
+        source,
+        options.optBoolean("caseSensitive")
+          ? 0
+          : Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE
+      );
+  }
+
+  /**
+   * Searches the tree under rootDocId and returns a summary. tree is null
+   * for local directories, see TreeWalker. Throws CancellationException if
+   * cancelled.
+   */
+  JSONObject search(
+    String tree,
+    TreeWalker.ChildLister lister,
+    String rootDocId,
+    Listener listener
+  ) throws InterruptedException, JSONException {
+    long start = System.nanoTime();
+    final ForkJoinPool pool = new ForkJoinPool(threads);
+    final List<ForkJoinTask<?>> scans = new ArrayList<ForkJoinTask<?>>();
+
+    this.tree = tree;
+    this.listener = listener;
+
+    try {
+      TreeWalker walker = new TreeWalker(tree, lister, options, cancelled);
+      try {
+        walker.walk(
+          rootDocId,
+          new TreeWalker.Listener() {
+            @Override
+            public void onBatch(JSONArray entries) {
+              List<JSONObject> batch = new ArrayList<JSONObject>();
+              for (int i = 0; i < entries.length(); i++) {
+                JSONObject entry = entries.optJSONObject(i);
+                if (!entry.optBoolean("isFile")) continue;
+                if (maxFileSize >= 0 && entry.optLong("length") > maxFileSize) {
+                  continue;
+                }
+                batch.add(entry);
+              }
+
+              if (!batch.isEmpty()) {
+                scans.add(pool.submit(new Scan(batch, 0, batch.size())));
+              }
+            }
+          }
+        );
+      } catch (CancellationException e) {
+        if (!limitReached) throw e;
+      }
+
+      for (ForkJoinTask<?> scan : scans) {
+        scan.join();
+      }
+
+      if (cancelled.get() && !limitReached) {
+        throw new CancellationException();
+      }
+
+      flush(true);
+    } finally {
+      pool.shutdownNow();
+    }
+
+    JSONObject summary = new JSONObject();
+    summary.put("type", "end");
+    summary.put("files", files.get());
+    summary.put("matches", limitReached ? maxResults : results.get());
+    summary.put("errors", errors.get());
+    summary.put("limitReached", limitReached);
+    summary.put("elapsed", (System.nanoTime() - start) / 1000000);
+    return summary;
+  }
+
+  /**
+   * Splits a batch of files in halves until a few are left, then scans them.
+   */
+  private class Scan extends RecursiveAction {
+
+    final List<JSONObject> entries;
+    final int from;
+    final int to;
+
+    Scan(List<JSONObject> entries, int from, int to) {
+      this.entries = entries;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from <= 2) {
+        for (int i = from; i < to; i++) {
+          if (cancelled.get()) return;
+          scanFile(entries.get(i));
+        }
+        return;
+      }
+
+      int mid = (from + to) >>> 1;
+      invokeAll(new Scan(entries, from, mid), new Scan(entries, mid, to));
+    }
+  }
+
+  private void scanFile(JSONObject entry) {
+    String url = entry.optString("url");
+
+    try (
+      InputStream in = new BufferedInputStream(open(url), BUFFER_SIZE)
+    ) {
+      if (isBinary(in)) return;
+      files.incrementAndGet();
+
+      BufferedReader reader = new BufferedReader(
+        new InputStreamReader(in, StandardCharsets.UTF_8)
+      );
+      Matcher matcher = pattern.matcher("");
+      String line;
+      int row = 0;
+
+      while ((line = reader.readLine()) != null) {
+        if (cancelled.get()) return;
+
+        matcher.reset(line);
+        while (matcher.find()) {
+          if (matcher.start() == matcher.end()) continue;
+          if (!addMatch(entry, url, row, matcher, line)) return;
+        }
+        row++;
+      }
+    } catch (Exception e) {
+      errors.incrementAndGet();
+    }
+  }
+
+  private InputStream open(String url) throws FileNotFoundException {
+    if (tree == null) {
+      return new FileInputStream(new File(Uri.parse(url).getPath()));
+    }
+
+    String docId = url.split(SEPARATOR, 2)[1];
+    return contentResolver.openInputStream(
+      DocumentsContract.buildDocumentUriUsingTree(Uri.parse(tree), docId)
+    );
+  }
+
+  private boolean isBinary(InputStream in) throws IOException {
+    byte[] head = new byte[SNIFF_SIZE];
+    int read = 0;
+
+    in.mark(SNIFF_SIZE);
+    while (read < SNIFF_SIZE) {
+      int count = in.read(head, read, SNIFF_SIZE - read);
+      if (count < 0) break;
+      read += count;
+    }
+    in.reset();
+
+    for (int i = 0; i < read; i++) {
+      if (head[i] == 0) return true;
+    }
+    return false;
+  }
+
+  /**
+   * Queues a match, returns false once max results is reached.
+   */
+  private boolean addMatch(
+    JSONObject entry,
+    String url,
+    int row,
+    Matcher matcher,
+    String line
+  ) throws JSONException {
+    int count = results.incrementAndGet();
+    if (maxResults >= 0 && count > maxResults) {
+      limitReached = true;
+      cancelled.set(true);
+      return false;
+    }
+
+    int start = matcher.start();
+    int end = matcher.end();
+    JSONObject match = new JSONObject();
+    match.put("url", url);
+    match.put("path", entry.optString("path"));
+    match.put("name", entry.optString("name"));
+    match.put("line", row);
+    match.put("column", start);
+    match.put("length", end - start);
+    match.put("match", matcher.group());
+    match.put("preview", preview(line, start, end));
+
+    synchronized (this) {
+      batch.put(match);
+    }
+    flush(false);
+    return true;
+  }
+
+  private synchronized void flush(boolean force) {
+    long now = System.nanoTime() / 1000000;
+    if (batch.length() == 0) return;
+    if (
+      !force &&
+      batch.length() < batchSize &&
+      now - lastFlush < FLUSH_INTERVAL
+    ) {
+      return;
+    }
+
+    listener.onMatches(batch);
+    batch = new JSONArray();
+    lastFlush = now;
+  }
+
+  /**
+   * Text around a match, at most PREVIEW_SIZE characters.
+   */
+  private static String preview(String line, int start, int end) {
+    int remaining = PREVIEW_SIZE - (end - start);
+    if (remaining <= 0) {
+      return "..." + line.substring(end - PREVIEW_SIZE, end);
+    }
+
+    int side = remaining / 2;
+    return line.substring(
+      Math.max(0, start - side),
+      Math.min(line.length(), end + side)
+    );
+  }
+}
@@ -0,0 +1,286 @@
+package com.foxdebug.sdcard;
+
+import android.net.Uri;
+import android.provider.DocumentsContract.Document;
+import java.io.File;
+import java.net.URLConnection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Pattern;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Breadth first walk of a SAF tree. Directory listings are fetched in
+ * parallel on a small pool while a single coordinating thread filters,
+ * batches and hands entries to the listener, so the listener is never
+ * called concurrently. Local directories can be walked too, with tree set to
+ * null and file uris as document ids.
+ */
+class TreeWalker {
+
+  private static final String SEPARATOR = "::";
+
+  interface ChildLister {
+    List<DocumentCache.Row> list(String parentDocId) throws Exception;
+  }
+
+  interface Listener {
+    void onBatch(JSONArray batch);
+  }
+
+  /**
+   * Lists local directories, parent and child ids are file uris.
+   */
+  static final ChildLister FILES = new ChildLister() {
+    @Override
+    public List<DocumentCache.Row> list(String parentDocId) {
+      File[] children = new File(Uri.parse(parentDocId).getPath()).listFiles();
+      if (children == null) return null;
+
+      List<DocumentCache.Row> rows = new ArrayList<DocumentCache.Row>(
+        children.length
+      );
+      for (File child : children) {
+        String mime = child.isDirectory()
+          ? Document.MIME_TYPE_DIR
+          : URLConnection.guessContentTypeFromName(child.getName());
+
+        rows.add(
+          new DocumentCache.Row(
+            Uri.fromFile(child).toString(),
+            child.getName(),
+            mime == null ? "application/octet-stream" : mime,
+            child.length(),
+            child.lastModified(),
+            0
+          )
+        );
+      }
+      return rows;
+    }
+  };
+
+  private final String tree;
+  private final ChildLister lister;
+  private final List<Pattern> nameIgnores = new ArrayList<Pattern>();
+  private final List<Pattern> pathIgnores = new ArrayList<Pattern>();
+  private final int maxDepth;
+  private final int batchSize;
+  private final int threads;
+  private final AtomicBoolean cancelled;
+
+  private int files = 0;
+  private int directories = 0;
+  private int errors = 0;
+
+  TreeWalker(
+    String tree,
+    ChildLister lister,
+    JSONObject options,
+    AtomicBoolean cancelled
+  ) {
+    this.tree = tree;
+    this.lister = lister;
+    this.cancelled = cancelled;
+
+    if (options == null) options = new JSONObject();
+    this.maxDepth = options.optInt("maxDepth", -1);
+    this.batchSize = Math.max(1, options.optInt("batchSize", 200));
+    this.threads = Math.max(
+      1,
+      Math.min(
+        options.optInt("threads", 4),
+        Runtime.getRuntime().availableProcessors()
+      )
+    );
+
+    JSONArray ignore = options.optJSONArray("ignore");
+    if (ignore != null) {
+      for (int i = 0; i < ignore.length(); i++) {
+        String glob = ignore.optString(i);
+        if (glob == null || glob.isEmpty()) continue;
+        if (glob.endsWith("/")) glob = glob.substring(0, glob.length() - 1);
+
+        if (glob.contains("/")) {
+          pathIgnores.add(globToPattern(glob));
+        } else {
+          nameIgnores.add(globToPattern(glob));
+        }
+      }
+    }
+  }
+
+  private static class Directory {
+
+    final String docId;
+    final String path;
+    final int depth;
+
+    Directory(String docId, String path, int depth) {
+      this.docId = docId;
+      this.path = path;
+      this.depth = depth;
+    }
+  }
+
+  private static class Listing {
+
+    final Directory directory;
+    final List<DocumentCache.Row> rows;
+
+    Listing(Directory directory, List<DocumentCache.Row> rows) {
+      this.directory = directory;
+      this.rows = rows;
+    }
+  }
+
+  /**
+   * Walks the tree under rootDocId and returns a summary. Throws
+   * CancellationException if cancelled while walking.
+   */
+  JSONObject walk(String rootDocId, Listener listener)
+    throws InterruptedException, JSONException {
+    long start = System.nanoTime();
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    ExecutorCompletionService<Listing> completion = new ExecutorCompletionService<Listing>(
+      pool
+    );
+    JSONArray batch = new JSONArray();
+    int inFlight = 0;
+
+    try {
+      submit(completion, new Directory(rootDocId, "", 0));
+      inFlight++;
+
+      while (inFlight > 0) {
+        if (cancelled.get()) throw new CancellationException();
+
+        Listing listing;
+        try {
+          listing = completion.take().get();
+          inFlight--;
+        } catch (ExecutionException e) {
+          inFlight--;
+          errors++;
+          continue;
+        }
+
+        Directory parent = listing.directory;
+        int depth = parent.depth + 1;
+
+        for (DocumentCache.Row row : listing.rows) {
+          String path = parent.path.isEmpty()
+            ? row.name
+            : parent.path + "/" + row.name;
+
+          if (isIgnored(row.name, path)) continue;
+
+          boolean isDirectory = Document.MIME_TYPE_DIR.equals(row.mime);
+          JSONObject entry = new JSONObject();
+          entry.put("name", row.name);
+          entry.put("path", path);
+          entry.put(
+            "url",
+            tree == null ? row.docId : tree + SEPARATOR + row.docId
+          );
+          entry.put("mime", row.mime);
+          entry.put("isDirectory", isDirectory);
+          entry.put("isFile", !isDirectory);
+          entry.put("length", row.size);
+          entry.put("lastModified", row.lastModified);
+          entry.put("depth", depth);
+          batch.put(entry);
+
+          if (isDirectory) {
+            directories++;
+            if (maxDepth < 0 || depth < maxDepth) {
+              submit(completion, new Directory(row.docId, path, depth));
+              inFlight++;
+            }
+          } else {
+            files++;
+          }
+
+          if (batch.length() >= batchSize) {
+            listener.onBatch(batch);
+            batch = new JSONArray();
+          }
+        }
+      }
+
+      if (batch.length() > 0) listener.onBatch(batch);
+    } finally {
+      pool.shutdownNow();
+    }
+
+    JSONObject summary = new JSONObject();
+    summary.put("type", "end");
+    summary.put("files", files);
+    summary.put("directories", directories);
+    summary.put("errors", errors);
+    summary.put("elapsed", (System.nanoTime() - start) / 1000000);
+    return summary;
+  }
+
+  private void submit(
+    ExecutorCompletionService<Listing> completion,
+    final Directory directory
+  ) {
+    completion.submit(
+      new Callable<Listing>() {
+        @Override
+        public Listing call() throws Exception {
+          if (cancelled.get()) throw new CancellationException();
+          List<DocumentCache.Row> rows = lister.list(directory.docId);
+          if (rows == null) throw new Exception("Cannot read directory.");
+          return new Listing(directory, rows);
+        }
+      }
+    );
+  }
+
+  private boolean isIgnored(String name, String path) {
+    for (Pattern pattern : nameIgnores) {
+      if (pattern.matcher(name).matches()) return true;
+    }
+    for (Pattern pattern : pathIgnores) {
+      if (pattern.matcher(path).matches()) return true;
+    }
+    return false;
+  }
+
+  /**
+   * Converts a glob to a regex. "**" matches across "/", "*" and "?" don't.
+   */
+  static Pattern globToPattern(String glob) {
+    StringBuilder regex = new StringBuilder();
+    for (int i = 0; i < glob.length(); i++) {
+      char c = glob.charAt(i);
+      switch (c) {
+        case '*':
+          if (i + 1 < glob.length() && glob.charAt(i + 1) == '*') {
+            regex.append(".*");
+            i++;
+          } else {
+            regex.append("[^/]*");
+          }
+          break;
+        case '?':
+          regex.append("[^/]");
+          break;
+        default:
+          regex.append(Pattern.quote(String.valueOf(c)));
+      }
+    }
+    return Pattern.compile(regex.toString());
+  }
+}
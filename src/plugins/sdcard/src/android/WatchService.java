@@ -0,0 +1,361 @@
+package com.foxdebug.sdcard;
+
+import android.os.FileObserver;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.SystemClock;
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.apache.cordova.CallbackContext;
+import org.apache.cordova.PluginResult;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Watches files and directory trees on a background thread. Raw inotify
+ * events are coalesced per path and sent in batches of {path, kind} once the
+ * watched tree has been quiet for the debounce window, so a burst of writes
+ * (a checkout, a build) reaches JS as a few batches instead of one callback
+ * per event. Kind is create, modify, delete or move (with from).
+ */
+class WatchService {
+
+  private static final int MASK =
+    FileObserver.CREATE |
+    FileObserver.DELETE |
+    FileObserver.MODIFY |
+    FileObserver.MOVED_FROM |
+    FileObserver.MOVED_TO |
+    FileObserver.DELETE_SELF |
+    FileObserver.MOVE_SELF;
+  private static final int MAX_WATCHES = 4096;
+  private static final long DEFAULT_DEBOUNCE = 50;
+  private static final long MAX_LATENCY = 1000;
+
+  private final HandlerThread thread;
+  private final Handler handler;
+  // only touched on the handler thread
+  private final HashMap<String, Watch> watches = new HashMap<String, Watch>();
+
+  WatchService() {
+    thread = new HandlerThread("SDcard-watch");
+    thread.start();
+    handler = new Handler(thread.getLooper());
+  }
+
+  /**
+   * Starts watching file, replacing any watch with the same id. Options:
+   * recursive (watch sub directories, default true) and debounce (ms).
+   */
+  void watch(
+    final String id,
+    final File file,
+    final JSONObject options,
+    final CallbackContext listener
+  ) {
+    handler.post(
+      new Runnable() {
+        @Override
+        public void run() {
+          if (!file.exists()) {
+            listener.error("File not found");
+            return;
+          }
+
+          Watch old = watches.remove(id);
+          if (old != null) old.stop();
+
+          Watch watch = new Watch(file, options, listener);
+          watches.put(id, watch);
+          watch.start();
+        }
+      }
+    );
+  }
+
+  void unwatch(final String id) {
+    handler.post(
+      new Runnable() {
+        @Override
+        public void run() {
+          Watch watch = watches.remove(id);
+          if (watch != null) watch.stop();
+        }
+      }
+    );
+  }
+
+  void shutdown() {
+    handler.post(
+      new Runnable() {
+        @Override
+        public void run() {
+          for (Watch watch : watches.values()) {
+            watch.stop();
+          }
+          watches.clear();
+        }
+      }
+    );
+    thread.quitSafely();
+  }
+
+  private static class Change {
+
+    final String kind;
+    final String from;
+
+    Change(String kind, String from) {
+      this.kind = kind;
+      this.from = from;
+    }
+  }
+
+  private class Observer extends FileObserver {
+
+    final Watch watch;
+    final File dir;
+
+    Observer(Watch watch, File dir) {
+      super(dir.getAbsolutePath(), MASK);
+      this.watch = watch;
+      this.dir = dir;
+    }
+
+    @Override
+    public void onEvent(final int event, final String name) {
+      // called on the shared inotify thread, hand over to ours
+      handler.post(
+        new Runnable() {
+          @Override
+          public void run() {
+            watch.onEvent(dir, event & FileObserver.ALL_EVENTS, name);
+          }
+        }
+      );
+    }
+  }
+
+  private class Watch {
+
+    final File root;
+    // set when watching a single file, it is watched through its parent
+    // so it keeps being watched after an atomic save replaces it
+    final String fileName;
+    final boolean recursive;
+    final long debounce;
+    final long maxLatency;
+    final CallbackContext listener;
+    final HashMap<String, Observer> observers = new HashMap<String, Observer>();
+    final LinkedHashMap<String, Change> pending = new LinkedHashMap<String, Change>();
+    final Runnable flush = new Runnable() {
+      @Override
+      public void run() {
+        flush();
+      }
+    };
+
+    String movedFrom;
+    long firstPending = 0;
+    boolean stopped = false;
+
+    Watch(File file, JSONObject options, CallbackContext listener) {
+      if (options == null) options = new JSONObject();
+      this.listener = listener;
+      this.debounce = Math.max(0, options.optLong("debounce", DEFAULT_DEBOUNCE));
+      this.maxLatency = Math.max(MAX_LATENCY, debounce);
+
+      if (file.isDirectory()) {
+        this.root = file;
+        this.fileName = null;
+        this.recursive = options.optBoolean("recursive", true);
+      } else {
+        this.root = file.getAbsoluteFile().getParentFile();
+        this.fileName = file.getName();
+        this.recursive = false;
+      }
+    }
+
+    void start() {
+      addTree(root, false);
+    }
+
+    void stop() {
+      stopped = true;
+      handler.removeCallbacks(flush);
+      for (Observer observer : observers.values()) {
+        observer.stopWatching();
+      }
+      observers.clear();
+    }
+
+    /**
+     * Watches dir and, if recursive, every directory below it. When the
+     * directory is new, entries created before the watch was in place are
+     * reported as created.
+     */
+    void addTree(File dir, boolean isNew) {
+      ArrayDeque<File> queue = new ArrayDeque<File>();
+      queue.add(dir);
+
+      while (!queue.isEmpty()) {
+        File current = queue.poll();
+        if (observers.size() >= MAX_WATCHES) return;
+
+        Observer observer = new Observer(this, current);
+        observers.put(current.getAbsolutePath(), observer);
+        observer.startWatching();
+
+        if (!recursive && !isNew) continue;
+
+        File[] children = current.listFiles();
+        if (children == null) continue;
+
+        for (File child : children) {
+          if (isNew) record(child.getAbsolutePath(), "create", null);
+          if (recursive && child.isDirectory()) queue.add(child);
+        }
+      }
+    }
+
+    void removeTree(String path) {
+      String prefix = path + File.separator;
+      Iterator<Map.Entry<String, Observer>> iterator = observers
+        .entrySet()
+        .iterator();
+
+      while (iterator.hasNext()) {
+        Map.Entry<String, Observer> entry = iterator.next();
+        if (entry.getKey().equals(path) || entry.getKey().startsWith(prefix)) {
+          entry.getValue().stopWatching();
+          iterator.remove();
+        }
+      }
+    }
+
+    void onEvent(File dir, int event, String name) {
+      if (stopped) return;
+
+      if (name == null) {
+        // event on a watched directory itself
+        if (event == FileObserver.DELETE_SELF || event == FileObserver.MOVE_SELF) {
+          String path = dir.getAbsolutePath();
+          removeTree(path);
+          if (dir.equals(root) && fileName == null) {
+            record(path, "delete", null);
+            schedule();
+          }
+        }
+        return;
+      }
+
+      if (fileName != null && !fileName.equals(name)) return;
+
+      File file = new File(dir, name);
+      String path = file.getAbsolutePath();
+
+      if (event != FileObserver.MOVED_TO && movedFrom != null) {
+        record(movedFrom, "delete", null);
+        movedFrom = null;
+      }
+
+      switch (event) {
+        case FileObserver.CREATE:
+          record(path, "create", null);
+          if (recursive && file.isDirectory()) addTree(file, true);
+          break;
+        case FileObserver.MODIFY:
+          record(path, "modify", null);
+          break;
+        case FileObserver.DELETE:
+          record(path, "delete", null);
+          removeTree(path);
+          break;
+        case FileObserver.MOVED_FROM:
+          // paired with the MOVED_TO that inotify sends right after it
+          movedFrom = path;
+          removeTree(path);
+          break;
+        case FileObserver.MOVED_TO:
+          if (movedFrom != null) {
+            record(path, "move", movedFrom);
+            movedFrom = null;
+          } else {
+            record(path, "create", null);
+          }
+          if (recursive && file.isDirectory()) addTree(file, true);
+          break;
+        default:
+          return;
+      }
+
+      schedule();
+    }
+
+    void record(String path, String kind, String from) {
+      Change previous = pending.remove(path);
+
+      if (previous != null) {
+        if (previous.kind.equals("create")) {
+          if (kind.equals("delete")) return;
+          if (kind.equals("modify")) kind = "create";
+        } else if (previous.kind.equals("delete") && kind.equals("create")) {
+          kind = "modify";
+        } else if (previous.kind.equals("move") && kind.equals("modify")) {
+          kind = "move";
+          from = previous.from;
+        }
+      }
+
+      pending.put(path, new Change(kind, from));
+    }
+
+    void schedule() {
+      long now = SystemClock.uptimeMillis();
+      if (firstPending == 0) firstPending = now;
+
+      // keep extending the window while events arrive, but not forever
+      long delay = Math.min(debounce, firstPending + maxLatency - now);
+      handler.removeCallbacks(flush);
+      handler.postDelayed(flush, Math.max(0, delay));
+    }
+
+    void flush() {
+      if (stopped) return;
+
+      if (movedFrom != null) {
+        record(movedFrom, "delete", null);
+        movedFrom = null;
+      }
+
+      firstPending = 0;
+      if (pending.isEmpty()) return;
+
+      JSONArray events = new JSONArray();
+      try {
+        for (Map.Entry<String, Change> entry : pending.entrySet()) {
+          JSONObject event = new JSONObject();
+          event.put("path", entry.getKey());
+          event.put("kind", entry.getValue().kind);
+          if (entry.getValue().from != null) {
+            event.put("from", entry.getValue().from);
+          }
+          events.put(event);
+        }
+      } catch (JSONException e) {
+        return;
+      } finally {
+        pending.clear();
+      }
+
+      PluginResult result = new PluginResult(PluginResult.Status.OK, events);
+      result.setKeepCallback(true);
+      listener.sendPluginResult(result);
+    }
+  }
+}
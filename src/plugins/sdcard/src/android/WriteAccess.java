@@ -0,0 +1,179 @@
+package com.foxdebug.sdcard;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.UriPermission;
+import android.content.pm.PackageManager;
+import android.database.Cursor;
+import android.net.Uri;
+import android.provider.DocumentsContract;
+import android.provider.DocumentsContract.Document;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+
+/**
+ * Answers whether a document is writable without opening it for writing.
+ * The grant comes from the persisted uri permissions (read once and kept
+ * until invalidated), the document's own capabilities from COLUMN_FLAGS.
+ * Only when a provider doesn't report flags is an output stream opened.
+ * Results for tree roots are cached, they are asked for on every path lookup.
+ */
+class WriteAccess {
+
+  private final Context context;
+  private final HashMap<String, Boolean> roots = new HashMap<String, Boolean>();
+  private HashMap<String, Boolean> grants;
+
+  WriteAccess(Context context) {
+    this.context = context;
+  }
+
+  /**
+   * Drops what is known, call when permissions may have changed.
+   */
+  synchronized void invalidate() {
+    grants = null;
+    roots.clear();
+  }
+
+  boolean canWrite(Uri uri) {
+    if (ContentResolver.SCHEME_FILE.equals(uri.getScheme())) {
+      return new File(uri.getPath()).canWrite();
+    }
+
+    String root = treeRoot(uri);
+    boolean isRoot = root != null && root.equals(uri.toString());
+
+    if (isRoot) {
+      synchronized (this) {
+        Boolean writable = roots.get(root);
+        if (writable != null) return writable;
+      }
+    }
+
+    boolean writable = isGranted(uri) && supportsWrite(uri);
+
+    if (isRoot) {
+      synchronized (this) {
+        roots.put(root, writable);
+      }
+    }
+
+    return writable;
+  }
+
+  /**
+   * Same as canWrite(uri) for a document whose mime type and flags are
+   * already known, saves the query.
+   */
+  boolean canWrite(Uri uri, String mime, int flags) {
+    return isGranted(uri) && supportsWrite(mime, flags);
+  }
+
+  private boolean isGranted(Uri uri) {
+    Uri grantUri = uri;
+    if (DocumentsContract.isTreeUri(uri)) {
+      grantUri =
+        DocumentsContract.buildTreeDocumentUri(
+          uri.getAuthority(),
+          DocumentsContract.getTreeDocumentId(uri)
+        );
+    }
+
+    Boolean granted;
+    synchronized (this) {
+      if (grants == null) grants = readGrants();
+      granted = grants.get(grantUri.toString());
+    }
+
+    if (granted != null && granted) return true;
+
+    // not persisted, may still be granted for this session
+    return (
+      context.checkCallingOrSelfUriPermission(
+        uri,
+        Intent.FLAG_GRANT_WRITE_URI_PERMISSION
+      ) ==
+      PackageManager.PERMISSION_GRANTED
+    );
+  }
+
+  private HashMap<String, Boolean> readGrants() {
+    HashMap<String, Boolean> grants = new HashMap<String, Boolean>();
+    for (UriPermission permission : context
+      .getContentResolver()
+      .getPersistedUriPermissions()) {
+      grants.put(
+        permission.getUri().toString(),
+        permission.isWritePermission()
+      );
+    }
+    return grants;
+  }
+
+  private boolean supportsWrite(Uri uri) {
+    Cursor cursor = null;
+    try {
+      cursor =
+        context
+          .getContentResolver()
+          .query(
+            uri,
+            new String[] { Document.COLUMN_MIME_TYPE, Document.COLUMN_FLAGS },
+            null,
+            null,
+            null
+          );
+
+      if (cursor != null && cursor.moveToFirst() && !cursor.isNull(1)) {
+        return supportsWrite(cursor.getString(0), cursor.getInt(1));
+      }
+    } catch (Exception e) {
+      // provider without document columns, probe below
+    } finally {
+      if (cursor != null) cursor.close();
+    }
+
+    return probe(uri);
+  }
+
+  private static boolean supportsWrite(String mime, int flags) {
+    if (Document.MIME_TYPE_DIR.equals(mime)) {
+      return (flags & Document.FLAG_DIR_SUPPORTS_CREATE) != 0;
+    }
+    return (flags & Document.FLAG_SUPPORTS_WRITE) != 0;
+  }
+
+  private boolean probe(Uri uri) {
+    try {
+      // if the file is not writable this throws a SecurityException
+      OutputStream os = context
+        .getContentResolver()
+        .openOutputStream(uri, "wa");
+
+      if (os == null) return false;
+
+      os.close(); // we don't actually want to write anything, so we close immediately
+      return true;
+    } catch (
+      SecurityException | IllegalArgumentException | IOException ignored
+    ) {
+      return false;
+    }
+  }
+
+  private static String treeRoot(Uri uri) {
+    if (!DocumentsContract.isTreeUri(uri)) return null;
+
+    String treeId = DocumentsContract.getTreeDocumentId(uri);
+    return DocumentsContract
+      .buildDocumentUriUsingTree(
+        DocumentsContract.buildTreeDocumentUri(uri.getAuthority(), treeId),
+        treeId
+      )
+      .toString();
+  }
+}
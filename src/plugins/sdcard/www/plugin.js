@@ -1,6 +1,33 @@
+function transfer(action, srcPathname, destPathname, onSuccess, onFail, options) {
+  if (!options) {
+    cordova.exec(onSuccess, onFail, 'SDcard', action, [srcPathname, destPathname]);
+    return;
+  }
+
+  var id = parseInt(Date.now() + Math.random() * 1000000) + '';
+  var onProgress = options.onProgress;
+  cordova.exec(function (res) {
+    if (res && res.type === 'progress') {
+      if (onProgress) onProgress(res);
+      return;
+    }
+    if (onSuccess) onSuccess(res);
+  }, onFail, 'SDcard', action, [srcPathname, destPathname, {
+    id: id,
+    progress: !!onProgress,
+    conflict: options.conflict,
+    threads: options.threads
+  }]);
+  return {
+    cancel: function () {
+      cordova.exec(null, null, 'SDcard', 'cancel task', [id]);
+    }
+  };
+}
+
 module.exports = {
-  copy: function (srcPathname, destPathname, onSuccess, onFail) {
-    cordova.exec(onSuccess, onFail, 'SDcard', 'copy', [srcPathname, destPathname]);
+  copy: function (srcPathname, destPathname, onSuccess, onFail, options) {
+    return transfer('copy', srcPathname, destPathname, onSuccess, onFail, options);
   },
   createDir: function (pathname, dir, onSuccess, onFail) {
     cordova.exec(onSuccess, onFail, 'SDcard', 'create directory', [pathname, dir]);
@@ -26,11 +53,11 @@ module.exports = {
   listStorages: function (onSuccess, onFail) {
     cordova.exec(onSuccess, onFail, 'SDcard', 'list volumes', []);
   },
-  listDir: function (src, onSuccess, onFail) {
-    cordova.exec(onSuccess, onFail, 'SDcard', 'list directory', [src]);
+  listDir: function (src, onSuccess, onFail, options) {
+    cordova.exec(onSuccess, onFail, 'SDcard', 'list directory', options ? [src, options] : [src]);
   },
-  move: function (srcPathname, destPathname, onSuccess, onFail) {
-    cordova.exec(onSuccess, onFail, 'SDcard', 'move', [srcPathname, destPathname]);
+  move: function (srcPathname, destPathname, onSuccess, onFail, options) {
+    return transfer('move', srcPathname, destPathname, onSuccess, onFail, options);
   },
   openDocumentFile: function (onSuccess, onFail, mimeType) {
     cordova.exec(onSuccess, onFail, 'SDcard', 'open document file', mimeType ? [mimeType] : []);
@@ -44,22 +71,86 @@ module.exports = {
   read: function (filename, onSuccess, onFail) {
     cordova.exec(onSuccess, onFail, 'SDcard', 'read', [filename]);
   },
+  readStream: function (filename, options, onChunk, onEnd, onFail) {
+    var id = parseInt(Date.now() + Math.random() * 1000000) + '';
+    var offset = 0;
+    cordova.exec(function (res) {
+      if (res instanceof ArrayBuffer) {
+        if (onChunk) onChunk(res, offset);
+        offset += res.byteLength;
+        return;
+      }
+      if (res && res.type === 'start') {
+        offset = res.offset;
+        return;
+      }
+      if (onEnd) onEnd(res);
+    }, onFail, 'SDcard', 'read stream', [filename, id, options || {}]);
+    return {
+      cancel: function () {
+        cordova.exec(null, null, 'SDcard', 'cancel task', [id]);
+      }
+    };
+  },
   write: function (filename, content, onSuccess, onFail) {
     var _isBuffer = content instanceof ArrayBuffer;
     cordova.exec(onSuccess, onFail, 'SDcard', 'write', [filename, content, _isBuffer]);
   },
+  writeFile: function (filename, content, onSuccess, onFail) {
+    var _isBuffer = content instanceof ArrayBuffer;
+    cordova.exec(onSuccess, onFail, 'SDcard', 'write file', [filename, content, _isBuffer]);
+  },
   stats: function (filename, onSuccess, onFail) {
     cordova.exec(onSuccess, onFail, 'SDcard', 'stats', [filename]);
   },
-  watchFile: function (filename, listener, onFail) {
+  statsMany: function (filenames, onSuccess, onFail) {
+    cordova.exec(onSuccess, onFail, 'SDcard', 'stats many', [filenames]);
+  },
+  watchFile: function (filename, listener, onFail, options) {
     var id = parseInt(Date.now() + Math.random() * 1000000) + '';
-    cordova.exec(listener, onFail, 'SDcard', 'watch file', [filename, id]);
+    cordova.exec(listener, onFail, 'SDcard', 'watch file', options ? [filename, id, options] : [filename, id]);
     return {
       unwatch: function () {
         cordova.exec(null, null, 'SDcard', 'unwatch file', [id]);
       }
     };
   },
+  walkTree: function (src, options, onBatch, onEnd, onFail) {
+    var id = parseInt(Date.now() + Math.random() * 1000000) + '';
+    cordova.exec(function (res) {
+      if (Array.isArray(res)) {
+        if (onBatch) onBatch(res);
+        return;
+      }
+      if (onEnd) onEnd(res);
+    }, onFail, 'SDcard', 'walk tree', [src, id, options || {}]);
+    return {
+      cancel: function () {
+        cordova.exec(null, null, 'SDcard', 'cancel task', [id]);
+      }
+    };
+  },
+  search: function (src, query, options, onMatches, onEnd, onFail) {
+    var id = parseInt(Date.now() + Math.random() * 1000000) + '';
+    cordova.exec(function (res) {
+      if (Array.isArray(res)) {
+        if (onMatches) onMatches(res);
+        return;
+      }
+      if (onEnd) onEnd(res);
+    }, onFail, 'SDcard', 'search', [src, id, query, options || {}]);
+    return {
+      cancel: function () {
+        cordova.exec(null, null, 'SDcard', 'cancel task', [id]);
+      }
+    };
+  },
+  getCacheStats: function (onSuccess, onFail) {
+    cordova.exec(onSuccess, onFail, 'SDcard', 'cache stats', []);
+  },
+  clearCache: function (onSuccess, onFail) {
+    cordova.exec(onSuccess, onFail, 'SDcard', 'clear cache', []);
+  },
   listEncodings: function (onSuccess, onFail) {
     cordova.exec(onSuccess, onFail, 'SDcard', 'list encodings', []);
   }
@@ -0,0 +1,178 @@
+package com.foxdebug.system;
+
+import android.net.Uri;
+import android.util.Base64;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Replaces local files atomically: the data goes to a temporary file in the
+ * same directory, is synced to disk and renamed over the target, so after a
+ * crash the file holds either the old or the new content. The permissions
+ * of a replaced file are kept. Batches are written in parallel and sync
+ * every touched directory once at the end instead of after every file.
+ */
+class AtomicWrite {
+
+    private static final int MAX_THREADS = 4;
+
+    private AtomicWrite() {}
+
+    /**
+     * Writes data to path (absolute or file:// url), creating missing
+     * parent directories. With sync, the file and its directory are synced
+     * before returning.
+     */
+    static void write(String path, byte[] data, boolean sync) throws IOException {
+        File target = write(toFile(path), data, sync);
+        if (sync) syncDirectory(target.getParentFile());
+    }
+
+    /**
+     * Writes every {path, text} or {path, data (base64)} of files in
+     * parallel. Returns {files: [{path, ok, error, ms}], elapsed}, in the
+     * order of files, a failed file doesn't stop the others.
+     */
+    static JSONObject writeAll(JSONArray files, final boolean sync)
+        throws JSONException, InterruptedException {
+        long start = java.lang.System.nanoTime();
+        int count = files.length();
+        ExecutorService pool = Executors.newFixedThreadPool(
+            Math.max(1, Math.min(count, Math.min(MAX_THREADS, Runtime.getRuntime().availableProcessors())))
+        );
+
+        List<Future<JSONObject>> results = new ArrayList<Future<JSONObject>>(count);
+        final Set<File> directories = new LinkedHashSet<File>();
+
+        try {
+            for (int i = 0; i < count; i++) {
+                final JSONObject file = files.getJSONObject(i);
+                results.add(pool.submit(new Callable<JSONObject>() {
+                    @Override
+                    public JSONObject call() throws JSONException {
+                        return writeOne(file, sync, directories);
+                    }
+                }));
+            }
+
+            JSONArray written = new JSONArray();
+            for (Future<JSONObject> result : results) {
+                try {
+                    written.put(result.get());
+                } catch (ExecutionException e) {
+                    JSONObject failed = new JSONObject();
+                    failed.put("ok", false);
+                    failed.put("error", e.getCause().toString());
+                    written.put(failed);
+                }
+            }
+
+            if (sync) {
+                for (File directory : directories) {
+                    syncDirectory(directory);
+                }
+            }
+
+            JSONObject summary = new JSONObject();
+            summary.put("files", written);
+            summary.put("elapsed", (java.lang.System.nanoTime() - start) / 1000000);
+            return summary;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static JSONObject writeOne(JSONObject file, boolean sync, Set<File> directories)
+        throws JSONException {
+        long start = java.lang.System.nanoTime();
+        String path = file.optString("path");
+        JSONObject result = new JSONObject();
+        result.put("path", path);
+
+        try {
+            byte[] data = file.has("data")
+                ? Base64.decode(file.getString("data"), Base64.DEFAULT)
+                : file.optString("text").getBytes(StandardCharsets.UTF_8);
+            File target = write(toFile(path), data, sync);
+            synchronized (directories) {
+                directories.add(target.getParentFile());
+            }
+            result.put("ok", true);
+        } catch (Exception e) {
+            result.put("ok", false);
+            result.put("error", e.toString());
+        }
+
+        result.put("ms", (java.lang.System.nanoTime() - start) / 1000000);
+        return result;
+    }
+
+    private static File write(File target, byte[] data, boolean sync) throws IOException {
+        File dir = target.getAbsoluteFile().getParentFile();
+        if (!dir.isDirectory() && !dir.mkdirs() && !dir.isDirectory()) {
+            throw new IOException("Unable to create " + dir.getAbsolutePath());
+        }
+
+        File temp = File.createTempFile("." + target.getName(), ".tmp", dir);
+        try {
+            try (FileOutputStream out = new FileOutputStream(temp)) {
+                out.write(data);
+                if (sync) out.getFD().sync();
+            }
+
+            if (target.exists()) {
+                try {
+                    Set<PosixFilePermission> permissions = Files.getPosixFilePermissions(target.toPath());
+                    Files.setPosixFilePermissions(temp.toPath(), permissions);
+                } catch (UnsupportedOperationException | IOException ignored) {}
+            }
+
+            Files.move(
+                temp.toPath(),
+                target.toPath(),
+                StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE
+            );
+        } catch (IOException e) {
+            temp.delete();
+            throw e;
+        }
+
+        return target.getAbsoluteFile();
+    }
+
+    /**
+     * Makes a rename in the directory durable. Best effort, not every file
+     * system lets a directory be opened.
+     */
+    private static void syncDirectory(File dir) {
+        try (FileChannel channel = FileChannel.open(dir.toPath(), StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException | RuntimeException ignored) {}
+    }
+
+    private static File toFile(String path) throws IOException {
+        if (path == null || path.isEmpty()) throw new IOException("Path is required");
+        if (path.startsWith("file://")) return new File(Uri.parse(path).getPath());
+        return new File(path);
+    }
+}
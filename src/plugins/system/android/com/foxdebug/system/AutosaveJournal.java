@@ -0,0 +1,442 @@
+package com.foxdebug.system;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import org.apache.cordova.CallbackContext;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Crash safe journal of unsaved editor buffers.
+ *
+ * Buffers are recorded as a full snapshot followed by edit deltas, so the
+ * cost of an autosave is the size of the edit. Records are appended to a
+ * log on a single background thread and synced to disk shortly after, each
+ * record carries a CRC so a write torn by a crash is dropped on replay.
+ * When the log grows well past the size of the live buffers it is compacted
+ * into one snapshot per buffer, written to a temporary file and renamed
+ * over the log.
+ *
+ * Record: int length, int crc32, then a payload of type, buffer id and
+ * either the text (snapshot), a list of [from, to, insert] changes (delta)
+ * or nothing (discard).
+ */
+class AutosaveJournal {
+
+    private static final String FILE_NAME = "autosave.log";
+    private static final long SYNC_DELAY_MS = 200;
+    private static final long COMPACT_MIN_BYTES = 1024 * 1024;
+
+    private static final byte SNAPSHOT = 1;
+    private static final byte DELTA = 2;
+    private static final byte DISCARD = 3;
+
+    private final File file;
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(
+        new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "autosave-journal");
+                // don't keep the process alive for the journal, records are
+                // synced within SYNC_DELAY_MS anyway
+                thread.setDaemon(true);
+                return thread;
+            }
+        }
+    );
+
+    // everything below is only touched on the executor thread
+    private final HashMap<String, Long> lengths = new HashMap<String, Long>();
+    private FileOutputStream stream;
+    private DataOutputStream out;
+    private long logBytes = 0;
+    private long liveBytes = 0;
+    private boolean syncPending = false;
+
+    private final Runnable sync = new Runnable() {
+        @Override
+        public void run() {
+            syncPending = false;
+            try {
+                sync();
+            } catch (IOException ignored) {}
+        }
+    };
+
+    AutosaveJournal(File dir) {
+        this.file = new File(dir, FILE_NAME);
+    }
+
+    /**
+     * Records the full text of a buffer, replacing what was recorded before.
+     */
+    void snapshot(final String id, final String text, final CallbackContext callback) {
+        run(callback, new Task() {
+            @Override
+            public Object run() throws IOException {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream(text.length() + 64);
+                DataOutputStream payload = new DataOutputStream(bytes);
+                payload.writeByte(SNAPSHOT);
+                writeString(payload, id);
+                writeString(payload, text);
+                append(bytes.toByteArray());
+                setLength(id, text.length());
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Records edits to a buffer. Changes are [from, to, insert] and are
+     * applied in order, each against the text left by the previous one.
+     * Fails if the buffer has no snapshot or a change is out of range, the
+     * caller should send a snapshot then.
+     */
+    void delta(final String id, final JSONArray changes, final CallbackContext callback) {
+        run(callback, new Task() {
+            @Override
+            public Object run() throws IOException, JSONException {
+                Long known = lengths.get(id);
+                if (known == null) throw new IOException("No snapshot for " + id);
+
+                long length = known;
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                DataOutputStream payload = new DataOutputStream(bytes);
+                payload.writeByte(DELTA);
+                writeString(payload, id);
+                payload.writeInt(changes.length());
+
+                for (int i = 0; i < changes.length(); i++) {
+                    JSONArray change = changes.getJSONArray(i);
+                    int from = change.getInt(0);
+                    int to = change.getInt(1);
+                    String insert = change.optString(2, "");
+
+                    if (from < 0 || to < from || to > length) {
+                        throw new IOException("Change out of range for " + id);
+                    }
+
+                    payload.writeInt(from);
+                    payload.writeInt(to);
+                    writeString(payload, insert);
+                    length += insert.length() - (to - from);
+                }
+
+                append(bytes.toByteArray());
+                setLength(id, length);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Forgets a buffer, e.g. after it was saved or closed.
+     */
+    void discard(final String id, final CallbackContext callback) {
+        run(callback, new Task() {
+            @Override
+            public Object run() throws IOException {
+                if (!lengths.containsKey(id)) return null;
+
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                DataOutputStream payload = new DataOutputStream(bytes);
+                payload.writeByte(DISCARD);
+                writeString(payload, id);
+                append(bytes.toByteArray());
+
+                liveBytes -= lengths.remove(id);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Syncs pending records to disk now.
+     */
+    void flush(CallbackContext callback) {
+        run(callback, new Task() {
+            @Override
+            public Object run() throws IOException {
+                sync();
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Returns the recorded text of every buffer as {id: text}.
+     */
+    void replay(CallbackContext callback) {
+        run(callback, new Task() {
+            @Override
+            public Object run() throws IOException, JSONException {
+                if (out != null) out.flush();
+
+                JSONObject result = new JSONObject();
+                for (Map.Entry<String, StringBuilder> entry : read().buffers.entrySet()) {
+                    result.put(entry.getKey(), entry.getValue().toString());
+                }
+                return result;
+            }
+        });
+    }
+
+    /**
+     * Deletes the journal.
+     */
+    void clear(CallbackContext callback) {
+        run(callback, new Task() {
+            @Override
+            public Object run() throws IOException {
+                close();
+                lengths.clear();
+                liveBytes = 0;
+                logBytes = 0;
+                if (file.exists() && !file.delete()) {
+                    throw new IOException("Unable to delete journal");
+                }
+                return null;
+            }
+        });
+    }
+
+    void shutdown() {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    sync();
+                } catch (IOException ignored) {}
+                close();
+            }
+        });
+        executor.shutdown();
+    }
+
+    private interface Task {
+        Object run() throws Exception;
+    }
+
+    private void run(final CallbackContext callback, final Task task) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    open();
+                    Object result = task.run();
+                    if (result instanceof JSONObject) {
+                        callback.success((JSONObject) result);
+                    } else {
+                        callback.success();
+                    }
+                } catch (Exception e) {
+                    callback.error(e.toString());
+                }
+            }
+        });
+    }
+
+    /**
+     * Opens the log for appending. The first time, whatever the previous
+     * session left is read back to know the buffers, and a torn tail is cut.
+     */
+    private void open() throws IOException {
+        if (out != null) return;
+
+        File dir = file.getParentFile();
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Unable to create " + dir.getAbsolutePath());
+        }
+
+        Log log = read();
+        if (file.exists() && file.length() > log.validBytes) {
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(log.validBytes);
+            }
+        }
+
+        lengths.clear();
+        liveBytes = 0;
+        for (Map.Entry<String, StringBuilder> entry : log.buffers.entrySet()) {
+            setLength(entry.getKey(), entry.getValue().length());
+        }
+
+        logBytes = log.validBytes;
+        stream = new FileOutputStream(file, true);
+        out = new DataOutputStream(stream);
+    }
+
+    private void close() {
+        if (out == null) return;
+        try {
+            out.close();
+        } catch (IOException ignored) {}
+        out = null;
+        stream = null;
+    }
+
+    private void append(byte[] payload) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+
+        out.writeInt(payload.length);
+        out.writeInt((int) crc.getValue());
+        out.write(payload);
+        logBytes += 8 + payload.length;
+
+        if (!syncPending) {
+            syncPending = true;
+            executor.schedule(sync, SYNC_DELAY_MS, TimeUnit.MILLISECONDS);
+        }
+
+        if (logBytes > Math.max(COMPACT_MIN_BYTES, liveBytes * 4)) compact();
+    }
+
+    private void sync() throws IOException {
+        if (out == null) return;
+        out.flush();
+        stream.getFD().sync();
+    }
+
+    /**
+     * Rewrites the log as one snapshot per live buffer.
+     */
+    private void compact() throws IOException {
+        out.flush();
+        Log log = read();
+        File temp = new File(file.getParentFile(), FILE_NAME + ".tmp");
+
+        try (FileOutputStream tempStream = new FileOutputStream(temp)) {
+            DataOutputStream tempOut = new DataOutputStream(tempStream);
+            for (Map.Entry<String, StringBuilder> entry : log.buffers.entrySet()) {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                DataOutputStream payload = new DataOutputStream(bytes);
+                payload.writeByte(SNAPSHOT);
+                writeString(payload, entry.getKey());
+                writeString(payload, entry.getValue().toString());
+
+                byte[] data = bytes.toByteArray();
+                CRC32 crc = new CRC32();
+                crc.update(data);
+                tempOut.writeInt(data.length);
+                tempOut.writeInt((int) crc.getValue());
+                tempOut.write(data);
+            }
+            tempOut.flush();
+            tempStream.getFD().sync();
+        }
+
+        close();
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Unable to compact journal");
+        }
+        open();
+    }
+
+    private static class Log {
+        final LinkedHashMap<String, StringBuilder> buffers = new LinkedHashMap<String, StringBuilder>();
+        long validBytes = 0;
+    }
+
+    /**
+     * Reads the log up to the first incomplete or damaged record.
+     */
+    private Log read() throws IOException {
+        Log log = new Log();
+        if (!file.exists()) return log;
+
+        try (DataInputStream in = new DataInputStream(
+            new BufferedInputStream(new FileInputStream(file), 64 * 1024)
+        )) {
+            long remaining = file.length();
+
+            while (remaining >= 8) {
+                int length = in.readInt();
+                int crc = in.readInt();
+                if (length < 0 || length > remaining - 8) break;
+
+                byte[] payload = new byte[length];
+                in.readFully(payload);
+
+                CRC32 check = new CRC32();
+                check.update(payload);
+                if ((int) check.getValue() != crc) break;
+
+                apply(log.buffers, payload);
+                remaining -= 8 + length;
+                log.validBytes += 8 + length;
+            }
+        } catch (EOFException e) {
+            // torn tail, keep what was read
+        }
+
+        return log;
+    }
+
+    private static void apply(Map<String, StringBuilder> buffers, byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new java.io.ByteArrayInputStream(payload));
+        byte type = in.readByte();
+        String id = readString(in);
+
+        switch (type) {
+            case SNAPSHOT:
+                buffers.put(id, new StringBuilder(readString(in)));
+                break;
+            case DELTA:
+                StringBuilder text = buffers.get(id);
+                int count = in.readInt();
+                for (int i = 0; i < count && text != null; i++) {
+                    int from = in.readInt();
+                    int to = in.readInt();
+                    String insert = readString(in);
+                    if (to > text.length()) {
+                        // out of sync, drop rather than restore garbage
+                        buffers.remove(id);
+                        text = null;
+                        break;
+                    }
+                    text.replace(from, to, insert);
+                }
+                break;
+            case DISCARD:
+                buffers.remove(id);
+                break;
+        }
+    }
+
+    private void setLength(String id, long length) {
+        Long old = lengths.put(id, length);
+        liveBytes += length - (old == null ? 0 : old);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
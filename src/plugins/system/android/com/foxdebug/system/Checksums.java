@@ -0,0 +1,395 @@
+package com.foxdebug.system;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.Build;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.Checksum;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Hashes files by uri in a stream, and text. Algorithms are xxh64 and
+ * crc32c (fast, for change detection), crc32 and sha256. File hashes are
+ * kept in a cache persisted to filesDir, keyed by algorithm and uri and
+ * valid while size and modification time match, so unchanged files are not
+ * read again. Files modified in the last RACY_MS are not cached, a second
+ * write within the time resolution would keep size and time. The cache is
+ * saved SAVE_DELAY_MS after the first change, so a burst of hashing writes
+ * it once, and on flush() when the app is paused.
+ */
+class Checksums {
+
+    static final String XXH64 = "xxh64";
+    static final String CRC32C = "crc32c";
+    static final String CRC32 = "crc32";
+    static final String SHA256 = "sha256";
+
+    private static final String CACHE_FILE = "checksums.json";
+    private static final int MAX_ENTRIES = 2048;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final long RACY_MS = 2000;
+    private static final long SAVE_DELAY_MS = 5000;
+    private static final int MAX_THREADS = 4;
+
+    private final Context context;
+    private final File cacheFile;
+    private LinkedHashMap<String, Entry> cache;
+    private boolean dirty = false;
+    private boolean savePending = false;
+    private final ScheduledExecutorService saver = Executors.newSingleThreadScheduledExecutor(
+        new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "checksums-cache");
+                // a lost save only means hashing some files again
+                thread.setDaemon(true);
+                return thread;
+            }
+        }
+    );
+
+    private final Runnable saveTask = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (Checksums.this) {
+                savePending = false;
+                save();
+            }
+        }
+    };
+
+    private static class Entry {
+        final long size;
+        final long lastModified;
+        final String hash;
+
+        Entry(long size, long lastModified, String hash) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.hash = hash;
+        }
+    }
+
+    Checksums(Context context) {
+        this.context = context;
+        this.cacheFile = new File(context.getFilesDir(), CACHE_FILE);
+    }
+
+    /**
+     * Hash of the UTF-8 bytes of text, lower case hex.
+     */
+    static String text(String text, String algorithm) throws Exception {
+        Hasher hasher = hasher(algorithm);
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        hasher.update(bytes, 0, bytes.length);
+        return hasher.digest();
+    }
+
+    String file(String url, String algorithm) throws Exception {
+        String hash = hash(url, algorithm);
+        scheduleSave();
+        return hash;
+    }
+
+    /**
+     * Hashes every url, up to MAX_THREADS files at a time, returns
+     * [{url, hash}] or [{url, error}] in order.
+     */
+    JSONArray files(JSONArray urls, final String algorithm) throws Exception {
+        hasher(algorithm); // fail the batch for an unknown algorithm
+
+        JSONArray result = new JSONArray();
+        if (urls.length() == 0) return result;
+
+        int threads = Math.min(
+            urls.length(),
+            Math.max(1, Math.min(MAX_THREADS, Runtime.getRuntime().availableProcessors()))
+        );
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<String>> hashes = new ArrayList<Future<String>>();
+
+        try {
+            for (int i = 0; i < urls.length(); i++) {
+                final String url = urls.getString(i);
+                hashes.add(
+                    pool.submit(
+                        new Callable<String>() {
+                            @Override
+                            public String call() throws Exception {
+                                return hash(url, algorithm);
+                            }
+                        }
+                    )
+                );
+            }
+
+            for (int i = 0; i < hashes.size(); i++) {
+                JSONObject item = new JSONObject();
+                item.put("url", urls.getString(i));
+                try {
+                    item.put("hash", hashes.get(i).get());
+                } catch (ExecutionException e) {
+                    item.put("error", e.getCause().toString());
+                }
+                result.put(item);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        scheduleSave();
+        return result;
+    }
+
+    /**
+     * Saves the cache now if it changed, called when the app is paused.
+     */
+    synchronized void flush() {
+        save();
+    }
+
+    private String hash(String url, String algorithm) throws Exception {
+        Hasher hasher = hasher(algorithm);
+        Uri uri = FileFingerprint.resolve(url);
+        long[] stat = FileFingerprint.stat(context, uri);
+        String key = (algorithm == null || algorithm.isEmpty() ? SHA256 : algorithm.toLowerCase()) + ":" + url;
+        boolean cacheable =
+            stat[0] >= 0 &&
+            stat[1] > 0 &&
+            java.lang.System.currentTimeMillis() - stat[1] > RACY_MS;
+
+        if (cacheable) {
+            Entry entry = get(key);
+            if (entry != null && entry.size == stat[0] && entry.lastModified == stat[1]) {
+                return entry.hash;
+            }
+        }
+
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream in = FileFingerprint.open(context, uri)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                hasher.update(buffer, 0, read);
+            }
+        }
+
+        String hash = hasher.digest();
+        if (cacheable) put(key, new Entry(stat[0], stat[1], hash));
+        return hash;
+    }
+
+    private synchronized Entry get(String key) {
+        return cache().get(key);
+    }
+
+    private synchronized void put(String key, Entry entry) {
+        cache().put(key, entry);
+        dirty = true;
+    }
+
+    private LinkedHashMap<String, Entry> cache() {
+        if (cache != null) return cache;
+
+        cache = new LinkedHashMap<String, Entry>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > MAX_ENTRIES;
+            }
+        };
+
+        if (!cacheFile.exists()) return cache;
+        try {
+            byte[] bytes = new byte[(int) cacheFile.length()];
+            try (InputStream in = new java.io.FileInputStream(cacheFile)) {
+                int read = 0;
+                while (read < bytes.length) {
+                    int count = in.read(bytes, read, bytes.length - read);
+                    if (count < 0) break;
+                    read += count;
+                }
+            }
+
+            JSONArray entries = new JSONArray(new String(bytes, StandardCharsets.UTF_8));
+            for (int i = 0; i < entries.length(); i++) {
+                JSONArray entry = entries.getJSONArray(i);
+                cache.put(
+                    entry.getString(0),
+                    new Entry(entry.getLong(1), entry.getLong(2), entry.getString(3))
+                );
+            }
+        } catch (IOException | JSONException e) {
+            // corrupt or unreadable, start over
+            cache.clear();
+        }
+        return cache;
+    }
+
+    private synchronized void scheduleSave() {
+        if (!dirty || savePending) return;
+        savePending = true;
+        saver.schedule(saveTask, SAVE_DELAY_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Writes the cache if it changed, to a temporary file renamed over the
+     * old one.
+     */
+    private synchronized void save() {
+        if (!dirty) return;
+        dirty = false;
+
+        JSONArray entries = new JSONArray();
+        for (Map.Entry<String, Entry> entry : cache.entrySet()) {
+            Entry value = entry.getValue();
+            entries.put(
+                new JSONArray()
+                    .put(entry.getKey())
+                    .put(value.size)
+                    .put(value.lastModified)
+                    .put(value.hash)
+            );
+        }
+        String json = entries.toString();
+
+        File temp = new File(cacheFile.getParentFile(), CACHE_FILE + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temp)) {
+            out.write(json.getBytes(StandardCharsets.UTF_8));
+            out.getFD().sync();
+        } catch (IOException e) {
+            temp.delete();
+            return;
+        }
+        if (!temp.renameTo(cacheFile)) temp.delete();
+    }
+
+    private interface Hasher {
+        void update(byte[] bytes, int offset, int length);
+
+        String digest();
+    }
+
+    private static Hasher hasher(String algorithm) throws Exception {
+        if (algorithm == null || algorithm.isEmpty()) algorithm = SHA256;
+
+        switch (algorithm.toLowerCase()) {
+            case XXH64:
+                final XxHash64 xxHash = new XxHash64();
+                return new Hasher() {
+                    @Override
+                    public void update(byte[] bytes, int offset, int length) {
+                        xxHash.update(bytes, offset, length);
+                    }
+
+                    @Override
+                    public String digest() {
+                        return String.format("%016x", xxHash.digest());
+                    }
+                };
+            case CRC32C:
+                return checksum(
+                    Build.VERSION.SDK_INT >= Build.VERSION_CODES.O
+                        ? new java.util.zip.CRC32C()
+                        : new Crc32c()
+                );
+            case CRC32:
+                return checksum(new CRC32());
+            case SHA256:
+                final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+                return new Hasher() {
+                    @Override
+                    public void update(byte[] bytes, int offset, int length) {
+                        digest.update(bytes, offset, length);
+                    }
+
+                    @Override
+                    public String digest() {
+                        StringBuilder hex = new StringBuilder();
+                        for (byte b : digest.digest()) {
+                            hex.append(String.format("%02x", b));
+                        }
+                        return hex.toString();
+                    }
+                };
+            default:
+                throw new IllegalArgumentException("Unsupported algorithm: " + algorithm);
+        }
+    }
+
+    private static Hasher checksum(final Checksum checksum) {
+        return new Hasher() {
+            @Override
+            public void update(byte[] bytes, int offset, int length) {
+                checksum.update(bytes, offset, length);
+            }
+
+            @Override
+            public String digest() {
+                return String.format("%08x", checksum.getValue());
+            }
+        };
+    }
+
+    /**
+     * CRC32C for devices before java.util.zip.CRC32C (API 26).
+     */
+    private static class Crc32c implements Checksum {
+
+        private static final int[] TABLE = new int[256];
+
+        static {
+            for (int i = 0; i < 256; i++) {
+                int crc = i;
+                for (int j = 0; j < 8; j++) {
+                    crc = (crc & 1) != 0 ? (crc >>> 1) ^ 0x82F63B78 : crc >>> 1;
+                }
+                TABLE[i] = crc;
+            }
+        }
+
+        private int crc = 0xFFFFFFFF;
+
+        @Override
+        public void update(int b) {
+            crc = (crc >>> 8) ^ TABLE[(crc ^ b) & 0xFF];
+        }
+
+        @Override
+        public void update(byte[] bytes, int offset, int length) {
+            int value = crc;
+            for (int i = offset; i < offset + length; i++) {
+                value = (value >>> 8) ^ TABLE[(value ^ bytes[i]) & 0xFF];
+            }
+            crc = value;
+        }
+
+        @Override
+        public long getValue() {
+            return (~crc) & 0xFFFFFFFFL;
+        }
+
+        @Override
+        public void reset() {
+            crc = 0xFFFFFFFF;
+        }
+    }
+}
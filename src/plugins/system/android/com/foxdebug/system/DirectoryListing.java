@@ -0,0 +1,133 @@
+package com.foxdebug.system;
+
+import android.net.Uri;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayDeque;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Lists a local directory with the attributes of every entry, read in the
+ * same pass as the names, optionally walking subdirectories breadth first.
+ * Symbolic links are reported as links and not followed, so a link cycle
+ * can't loop the walk.
+ */
+class DirectoryListing {
+
+    private static final int DEFAULT_MAX_ENTRIES = 10000;
+    private static final int DEFAULT_MAX_DEPTH = 16;
+
+    private DirectoryListing() {}
+
+    /**
+     * Options: recursive, maxDepth (default 16 when recursive), maxEntries
+     * (default 10000) and hidden (default true).
+     *
+     * Returns {entries, truncated}, entries are {name, path, depth, type
+     * (file, directory, symlink or other), size, lastModified, permissions
+     * ("rwxr-xr-x"), target (symlinks)}. Unreadable subdirectories are
+     * skipped.
+     */
+    static JSONObject list(String path, JSONObject options) throws IOException, JSONException {
+        if (options == null) options = new JSONObject();
+        boolean recursive = options.optBoolean("recursive", false);
+        int maxDepth = recursive ? options.optInt("maxDepth", DEFAULT_MAX_DEPTH) : 0;
+        int maxEntries = options.optInt("maxEntries", DEFAULT_MAX_ENTRIES);
+        boolean hidden = options.optBoolean("hidden", true);
+
+        if (path.startsWith("file://")) path = Uri.parse(path).getPath();
+        Path root = Paths.get(path);
+        if (!Files.isDirectory(root)) throw new IOException("Not a directory: " + path);
+
+        JSONArray entries = new JSONArray();
+        boolean truncated = false;
+        ArrayDeque<Path> dirs = new ArrayDeque<Path>();
+        ArrayDeque<Integer> depths = new ArrayDeque<Integer>();
+        dirs.add(root);
+        depths.add(0);
+
+        walk:
+        while (!dirs.isEmpty()) {
+            Path dir = dirs.poll();
+            int depth = depths.poll();
+
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+                for (Path child : stream) {
+                    String name = child.getFileName().toString();
+                    if (!hidden && name.startsWith(".")) continue;
+
+                    if (maxEntries >= 0 && entries.length() >= maxEntries) {
+                        truncated = true;
+                        break walk;
+                    }
+
+                    JSONObject entry = entry(child, name, depth);
+                    entries.put(entry);
+
+                    if (depth < maxDepth && "directory".equals(entry.optString("type"))) {
+                        dirs.add(child);
+                        depths.add(depth + 1);
+                    }
+                }
+            } catch (IOException | SecurityException e) {
+                if (dir == root) throw new IOException(e.toString());
+            }
+        }
+
+        JSONObject result = new JSONObject();
+        result.put("entries", entries);
+        result.put("truncated", truncated);
+        return result;
+    }
+
+    private static JSONObject entry(Path path, String name, int depth) throws JSONException {
+        JSONObject entry = new JSONObject();
+        entry.put("name", name);
+        entry.put("path", path.toString());
+        entry.put("depth", depth);
+
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(path, PosixFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            entry.put(
+                "permissions",
+                PosixFilePermissions.toString(((PosixFileAttributes) attributes).permissions())
+            );
+        } catch (UnsupportedOperationException | IOException e) {
+            try {
+                attributes = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            } catch (IOException ignored) {
+                entry.put("type", "other");
+                return entry;
+            }
+        }
+
+        String type;
+        if (attributes.isSymbolicLink()) {
+            type = "symlink";
+            try {
+                entry.put("target", Files.readSymbolicLink(path).toString());
+            } catch (IOException ignored) {}
+        } else if (attributes.isDirectory()) {
+            type = "directory";
+        } else if (attributes.isRegularFile()) {
+            type = "file";
+        } else {
+            type = "other";
+        }
+
+        entry.put("type", type);
+        entry.put("size", attributes.size());
+        entry.put("lastModified", attributes.lastModifiedTime().toMillis());
+        return entry;
+    }
+}
@@ -0,0 +1,385 @@
+package com.foxdebug.system;
+
+import android.content.Context;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Guesses the charset of a file from the first bytes, without decoding it.
+ * In order: byte order marks, UTF-16 without BOM from the position of NUL
+ * bytes, a UTF-8 validity scan, then, for text that is not UTF-8, a score
+ * for each legacy charset. For the multi byte CJK charsets the score is the
+ * share of characters in the rows where the frequent characters of the
+ * language sit (the distribution analysis of Mozilla's detector, by rows
+ * rather than tables). For single byte charsets it is the share of high
+ * bytes that are letters, weighted by what the script's text looks like:
+ * isolated accented letters for Latin, runs of mostly lower case letters
+ * for Cyrillic.
+ */
+class EncodingDetector {
+
+    static final int DEFAULT_SAMPLE_SIZE = 64 * 1024;
+
+    private static final String[] MULTI_BYTE = { "Shift_JIS", "EUC-JP", "GBK", "Big5", "EUC-KR" };
+    private static final String[] SINGLE_BYTE = { "windows-1252", "windows-1251", "KOI8-R" };
+
+    private EncodingDetector() {}
+
+    private static class Candidate {
+        final String encoding;
+        final double confidence;
+
+        Candidate(String encoding, double confidence) {
+            this.encoding = encoding;
+            this.confidence = confidence;
+        }
+    }
+
+    /**
+     * Returns [{encoding, confidence}], most likely first. Empty for binary
+     * files.
+     */
+    static JSONArray detect(Context context, String url, int sampleSize)
+        throws IOException, JSONException {
+        byte[] sample = read(context, url, sampleSize > 0 ? sampleSize : DEFAULT_SAMPLE_SIZE);
+        List<Candidate> candidates = detect(sample);
+
+        Collections.sort(candidates, new Comparator<Candidate>() {
+            @Override
+            public int compare(Candidate a, Candidate b) {
+                return Double.compare(b.confidence, a.confidence);
+            }
+        });
+
+        JSONArray result = new JSONArray();
+        for (Candidate candidate : candidates) {
+            if (!Charset.isSupported(candidate.encoding)) continue;
+            JSONObject item = new JSONObject();
+            item.put("encoding", Charset.forName(candidate.encoding).name());
+            item.put("confidence", Math.round(candidate.confidence * 100) / 100.0);
+            result.put(item);
+        }
+        return result;
+    }
+
+    private static List<Candidate> detect(byte[] s) {
+        List<Candidate> candidates = new ArrayList<Candidate>();
+        int n = s.length;
+
+        String bom = bom(s);
+        if (bom != null) {
+            candidates.add(new Candidate(bom, 1));
+            return candidates;
+        }
+
+        if (n == 0) {
+            candidates.add(new Candidate("UTF-8", 1));
+            return candidates;
+        }
+
+        int evenZeros = 0;
+        int oddZeros = 0;
+        for (int i = 0; i < n; i++) {
+            if (s[i] == 0) {
+                if ((i & 1) == 0) evenZeros++;
+                else oddZeros++;
+            }
+        }
+
+        if (evenZeros + oddZeros > 0) {
+            double half = n / 2.0;
+            // mostly ASCII text in UTF-16 has every other byte NUL
+            if (oddZeros > half * 0.3 && evenZeros < half * 0.05) {
+                candidates.add(new Candidate("UTF-16LE", 0.85));
+            } else if (evenZeros > half * 0.3 && oddZeros < half * 0.05) {
+                candidates.add(new Candidate("UTF-16BE", 0.85));
+            }
+            // otherwise binary
+            return candidates;
+        }
+
+        int utf8 = utf8(s);
+        if (utf8 >= 0) {
+            // ASCII only is valid in every candidate, UTF-8 is the best bet
+            candidates.add(new Candidate("UTF-8", utf8 == 0 ? 0.95 : 0.99));
+            return candidates;
+        }
+
+        for (String charset : MULTI_BYTE) {
+            double confidence = multiByte(charset, s);
+            if (confidence > 0) candidates.add(new Candidate(charset, confidence));
+        }
+
+        for (String charset : SINGLE_BYTE) {
+            double confidence = singleByte(charset, s);
+            if (confidence > 0) candidates.add(new Candidate(charset, confidence));
+        }
+
+        // decodes anything
+        candidates.add(new Candidate("ISO-8859-1", 0.05));
+        return candidates;
+    }
+
+    private static String bom(byte[] s) {
+        int n = s.length;
+        if (n >= 3 && (s[0] & 0xFF) == 0xEF && (s[1] & 0xFF) == 0xBB && (s[2] & 0xFF) == 0xBF) {
+            return "UTF-8";
+        }
+        if (n >= 4 && (s[0] & 0xFF) == 0xFF && (s[1] & 0xFF) == 0xFE && s[2] == 0 && s[3] == 0) {
+            return "UTF-32LE";
+        }
+        if (n >= 4 && s[0] == 0 && s[1] == 0 && (s[2] & 0xFF) == 0xFE && (s[3] & 0xFF) == 0xFF) {
+            return "UTF-32BE";
+        }
+        if (n >= 2 && (s[0] & 0xFF) == 0xFF && (s[1] & 0xFF) == 0xFE) return "UTF-16LE";
+        if (n >= 2 && (s[0] & 0xFF) == 0xFE && (s[1] & 0xFF) == 0xFF) return "UTF-16BE";
+        return null;
+    }
+
+    /**
+     * Returns -1 if not UTF-8, else the number of multi byte sequences. A
+     * sequence cut by the end of the sample is fine.
+     */
+    private static int utf8(byte[] s) {
+        int n = s.length;
+        int sequences = 0;
+        int i = 0;
+
+        while (i < n) {
+            int b = s[i] & 0xFF;
+            if (b < 0x80) {
+                i++;
+                continue;
+            }
+
+            int length;
+            int min;
+            if (b >= 0xC2 && b <= 0xDF) {
+                length = 2;
+                min = 0x80;
+            } else if (b >= 0xE0 && b <= 0xEF) {
+                length = 3;
+                min = 0x800;
+            } else if (b >= 0xF0 && b <= 0xF4) {
+                length = 4;
+                min = 0x10000;
+            } else {
+                return -1;
+            }
+
+            int codePoint = b & (0xFF >> (length + 1));
+            for (int j = 1; j < length; j++) {
+                if (i + j >= n) return sequences;
+                int next = s[i + j] & 0xFF;
+                if ((next & 0xC0) != 0x80) return -1;
+                codePoint = (codePoint << 6) | (next & 0x3F);
+            }
+
+            // overlong, surrogate or out of range
+            if (codePoint < min || (codePoint >= 0xD800 && codePoint <= 0xDFFF) || codePoint > 0x10FFFF) {
+                return -1;
+            }
+
+            sequences++;
+            i += length;
+        }
+
+        return sequences;
+    }
+
+    /**
+     * Share of double byte characters in frequent rows, 0 if the sample is
+     * not valid in charset.
+     */
+    private static double multiByte(String charset, byte[] s) {
+        int n = s.length;
+        int chars = 0;
+        int frequent = 0;
+        int spaces = 0;
+        int i = 0;
+
+        while (i < n) {
+            int lead = s[i] & 0xFF;
+            if (lead < 0x80) {
+                if (lead == ' ' && i > 0 && (s[i - 1] & 0xFF) >= 0x80) spaces++;
+                i++;
+                continue;
+            }
+
+            // single byte half width katakana
+            if (charset.equals("Shift_JIS") && lead >= 0xA1 && lead <= 0xDF) {
+                chars++;
+                i++;
+                continue;
+            }
+
+            if (i + 1 >= n) break;
+            int trail = s[i + 1] & 0xFF;
+
+            if (charset.equals("EUC-JP") && lead == 0x8F) {
+                // JIS X 0212, three bytes, rare
+                if (i + 2 >= n) break;
+                if (!inRange(trail, 0xA1, 0xFE) || !inRange(s[i + 2] & 0xFF, 0xA1, 0xFE)) return 0;
+                chars++;
+                i += 3;
+                continue;
+            }
+
+            if (!isLead(charset, lead) || !isTrail(charset, lead, trail)) return 0;
+
+            chars++;
+            if (isFrequent(charset, lead, trail)) frequent++;
+            i += 2;
+        }
+
+        if (chars == 0) return 0;
+
+        double confidence = (double) frequent / chars;
+        // Korean separates words with spaces, Chinese and Japanese don't
+        double spacing = Math.min(1, spaces * 5.0 / chars);
+        if (charset.equals("EUC-KR")) {
+            confidence *= 0.8 + 0.2 * spacing;
+        } else {
+            confidence *= 1 - 0.2 * spacing;
+        }
+        return confidence * 0.95;
+    }
+
+    private static boolean isLead(String charset, int b) {
+        switch (charset) {
+            case "Shift_JIS":
+                return inRange(b, 0x81, 0x9F) || inRange(b, 0xE0, 0xFC);
+            case "EUC-JP":
+                return b == 0x8E || inRange(b, 0xA1, 0xFE);
+            case "GBK":
+                return inRange(b, 0x81, 0xFE);
+            case "Big5":
+                return inRange(b, 0xA1, 0xF9);
+            case "EUC-KR":
+                return inRange(b, 0xA1, 0xFE);
+            default:
+                return false;
+        }
+    }
+
+    private static boolean isTrail(String charset, int lead, int b) {
+        switch (charset) {
+            case "Shift_JIS":
+                return inRange(b, 0x40, 0x7E) || inRange(b, 0x80, 0xFC);
+            case "EUC-JP":
+                return lead == 0x8E ? inRange(b, 0xA1, 0xDF) : inRange(b, 0xA1, 0xFE);
+            case "GBK":
+                return inRange(b, 0x40, 0x7E) || inRange(b, 0x80, 0xFE);
+            case "Big5":
+                return inRange(b, 0x40, 0x7E) || inRange(b, 0xA1, 0xFE);
+            case "EUC-KR":
+                return inRange(b, 0xA1, 0xFE);
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Rows of punctuation, kana, Hangul and the first level (most used)
+     * ideographs.
+     */
+    private static boolean isFrequent(String charset, int lead, int trail) {
+        switch (charset) {
+            case "Shift_JIS":
+                return (
+                    lead == 0x81 ||
+                    (lead == 0x82 && trail >= 0x9F) ||
+                    (lead == 0x83 && trail <= 0x96) ||
+                    inRange(lead, 0x88, 0x98)
+                );
+            case "EUC-JP":
+                return lead == 0xA1 || lead == 0xA4 || lead == 0xA5 || inRange(lead, 0xB0, 0xCF);
+            case "GBK":
+                return trail >= 0xA1 && (inRange(lead, 0xA1, 0xA3) || inRange(lead, 0xB0, 0xD7));
+            case "Big5":
+                return inRange(lead, 0xA1, 0xC6);
+            case "EUC-KR":
+                return lead == 0xA1 || inRange(lead, 0xB0, 0xC8);
+            default:
+                return false;
+        }
+    }
+
+    private static double singleByte(String charset, byte[] s) {
+        int high = 0;
+        int letters = 0;
+        int lower = 0;
+        int runs = 0;
+
+        for (int i = 0; i < s.length; i++) {
+            int b = s[i] & 0xFF;
+            if (b < 0x80) continue;
+            high++;
+
+            boolean previousHigh = i > 0 && (s[i - 1] & 0xFF) >= 0x80;
+            boolean nextHigh = i + 1 < s.length && (s[i + 1] & 0xFF) >= 0x80;
+            if (previousHigh || nextHigh) runs++;
+
+            switch (charset) {
+                case "windows-1252":
+                    if (b >= 0xC0 && b != 0xD7 && b != 0xF7) letters++;
+                    // quotes, dashes and the like
+                    else if (inRange(b, 0x91, 0x97) || b == 0x85 || b == 0xA0) letters++;
+                    break;
+                case "windows-1251":
+                    if (b >= 0xC0) {
+                        letters++;
+                        if (b >= 0xE0) lower++;
+                    }
+                    break;
+                case "KOI8-R":
+                    if (b >= 0xC0) {
+                        letters++;
+                        if (b < 0xE0) lower++;
+                    }
+                    break;
+            }
+        }
+
+        if (high == 0) return 0;
+
+        double letterShare = (double) letters / high;
+        double runShare = (double) runs / high;
+        if (charset.equals("windows-1252")) {
+            return letterShare * (1 - runShare * 0.7) * 0.8;
+        }
+
+        double lowerShare = letters == 0 ? 0 : (double) lower / letters;
+        return letterShare * lowerShare * runShare * 0.8;
+    }
+
+    private static boolean inRange(int b, int from, int to) {
+        return b >= from && b <= to;
+    }
+
+    private static byte[] read(Context context, String url, int size) throws IOException {
+        byte[] buffer = new byte[size];
+        int read = 0;
+
+        try (InputStream in = FileFingerprint.open(context, FileFingerprint.resolve(url))) {
+            while (read < size) {
+                int count = in.read(buffer, read, size - read);
+                if (count < 0) break;
+                read += count;
+            }
+        }
+
+        if (read == size) return buffer;
+        byte[] sample = new byte[read];
+        java.lang.System.arraycopy(buffer, 0, sample, 0, read);
+        return sample;
+    }
+}
@@ -0,0 +1,204 @@
+package com.foxdebug.system;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.provider.DocumentsContract;
+import android.provider.DocumentsContract.Document;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.CRC32;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Cheap change detection for files open in the editor. A fingerprint is the
+ * size, the modification time and a CRC32 for every BLOCK_SIZE bytes of the
+ * file, taken while the editor text matches it. Comparing a file to its
+ * fingerprint settles most checks from size and time alone, otherwise the
+ * file is streamed block by block and the first block that differs stops
+ * the read. The editor text is never sent over the bridge.
+ */
+class FileFingerprint {
+
+    static final int UNCHANGED = 0;
+    static final int CHANGED = 1;
+    static final int UNKNOWN = 2;
+
+    private static final int BLOCK_SIZE = 64 * 1024;
+    private static final int HEX_SIZE = 8;
+
+    private FileFingerprint() {}
+
+    /**
+     * Returns {size, lastModified, blocks}, size and lastModified are -1 when
+     * the provider doesn't report them.
+     */
+    static JSONObject of(Context context, String url) throws IOException, JSONException {
+        Uri uri = resolve(url);
+        long[] stat = stat(context, uri);
+        StringBuilder blocks = new StringBuilder();
+        long size = hash(context, uri, null, blocks);
+        return fingerprint(size, stat[1], blocks);
+    }
+
+    /**
+     * Compares a file to a fingerprint taken earlier. Returns {status} with
+     * UNCHANGED, CHANGED or UNKNOWN (no usable fingerprint, compare the text
+     * instead). When unchanged, fingerprint holds the current one, its time
+     * may have moved.
+     */
+    static JSONObject compare(Context context, String url, JSONObject known)
+        throws IOException, JSONException {
+        JSONObject result = new JSONObject();
+        String knownBlocks = known == null ? "" : known.optString("blocks", "");
+        long knownSize = known == null ? -1 : known.optLong("size", -1);
+
+        if (knownSize < 0 || knownBlocks.length() % HEX_SIZE != 0) {
+            result.put("status", UNKNOWN);
+            return result;
+        }
+
+        Uri uri = resolve(url);
+        long[] stat = stat(context, uri);
+        long size = stat[0];
+        long lastModified = stat[1];
+
+        if (size >= 0 && size != knownSize) {
+            result.put("status", CHANGED);
+            return result;
+        }
+
+        long knownLastModified = known.optLong("lastModified", -1);
+        if (size >= 0 && lastModified >= 0 && lastModified == knownLastModified) {
+            result.put("status", UNCHANGED);
+            result.put("fingerprint", known);
+            return result;
+        }
+
+        StringBuilder blocks = new StringBuilder(knownBlocks.length());
+        long read = hash(context, uri, knownBlocks, blocks);
+        if (read < 0 || read != knownSize || !knownBlocks.contentEquals(blocks)) {
+            result.put("status", CHANGED);
+            return result;
+        }
+
+        result.put("status", UNCHANGED);
+        result.put("fingerprint", fingerprint(read, lastModified, blocks));
+        return result;
+    }
+
+    private static JSONObject fingerprint(long size, long lastModified, CharSequence blocks)
+        throws JSONException {
+        JSONObject fingerprint = new JSONObject();
+        fingerprint.put("size", size);
+        fingerprint.put("lastModified", lastModified);
+        fingerprint.put("blocks", blocks.toString());
+        return fingerprint;
+    }
+
+    /**
+     * Appends the CRC of every block to blocks and returns the number of
+     * bytes read. With expected, stops at the first block that differs from
+     * it and returns -1.
+     */
+    private static long hash(Context context, Uri uri, String expected, StringBuilder blocks)
+        throws IOException {
+        byte[] buffer = new byte[BLOCK_SIZE];
+        CRC32 crc = new CRC32();
+        long total = 0;
+
+        try (InputStream in = open(context, uri)) {
+            while (true) {
+                int filled = 0;
+                while (filled < BLOCK_SIZE) {
+                    int count = in.read(buffer, filled, BLOCK_SIZE - filled);
+                    if (count < 0) break;
+                    filled += count;
+                }
+                if (filled == 0) break;
+
+                crc.reset();
+                crc.update(buffer, 0, filled);
+                String hex = String.format("%08x", crc.getValue());
+                if (expected != null && !expected.startsWith(hex, blocks.length())) {
+                    return -1;
+                }
+                blocks.append(hex);
+                total += filled;
+
+                if (filled < BLOCK_SIZE) break;
+            }
+        }
+
+        return total;
+    }
+
+    /**
+     * Returns {size, lastModified}, -1 for what is unknown.
+     */
+    static long[] stat(Context context, Uri uri) throws FileNotFoundException {
+        long[] stat = { -1, -1 };
+
+        if ("file".equalsIgnoreCase(uri.getScheme())) {
+            File file = new File(uri.getPath());
+            if (!file.isFile()) throw new FileNotFoundException("File does not exist");
+            stat[0] = file.length();
+            stat[1] = file.lastModified();
+            return stat;
+        }
+
+        try (
+            Cursor cursor = context
+                .getContentResolver()
+                .query(
+                    uri,
+                    new String[] { Document.COLUMN_SIZE, Document.COLUMN_LAST_MODIFIED },
+                    null,
+                    null,
+                    null
+                )
+        ) {
+            if (cursor != null && cursor.moveToFirst()) {
+                if (!cursor.isNull(0)) stat[0] = cursor.getLong(0);
+                if (!cursor.isNull(1)) stat[1] = cursor.getLong(1);
+            }
+        } catch (Exception e) {
+            // provider without document columns, compare by content
+        }
+        return stat;
+    }
+
+    static InputStream open(Context context, Uri uri) throws FileNotFoundException {
+        if ("file".equalsIgnoreCase(uri.getScheme())) {
+            return new FileInputStream(new File(uri.getPath()));
+        }
+
+        InputStream in = context.getContentResolver().openInputStream(uri);
+        if (in == null) throw new FileNotFoundException("File not found");
+        return in;
+    }
+
+    /**
+     * Resolves file:// and content:// urls, including SAF "tree::docId" urls.
+     */
+    static Uri resolve(String url) throws FileNotFoundException {
+        if (url == null || url.isEmpty()) throw new FileNotFoundException("File URI is required");
+
+        Uri uri = Uri.parse(url);
+        String scheme = uri.getScheme();
+        if ("file".equalsIgnoreCase(scheme)) return uri;
+        if (!"content".equalsIgnoreCase(scheme)) {
+            throw new FileNotFoundException("Unsupported URI scheme: " + scheme);
+        }
+
+        if (url.contains("::")) {
+            String[] parts = url.split("::", 2);
+            return DocumentsContract.buildDocumentUriUsingTree(Uri.parse(parts[0]), parts[1]);
+        }
+        return uri;
+    }
+}
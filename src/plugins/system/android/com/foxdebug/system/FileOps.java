@@ -0,0 +1,169 @@
+package com.foxdebug.system;
+
+import android.net.Uri;
+import android.system.ErrnoException;
+import android.system.Os;
+import android.system.OsConstants;
+import android.system.StructStat;
+import java.io.File;
+import java.io.IOException;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Runs a list of filesystem operations in order with Os calls, without
+ * spawning processes, and reports the result of each. Paths are absolute
+ * or file:// urls.
+ *
+ * Operations, by "op":
+ * - symlink {target, path, force}: force replaces an existing file or link
+ * - chmod {path, mode}: mode is a number or an octal string
+ * - mkdirs {path}
+ * - rm {path, recursive}: symbolic links are removed, never followed
+ * - rename {path, target}
+ * - stat {path, followLinks}: {type, size, mode, mtime}
+ * - exists {path, followLinks}: {exists}
+ */
+class FileOps {
+
+    private FileOps() {}
+
+    /**
+     * Returns [{op, path, ok, error, ...}] in the order of ops. With
+     * stopOnError the operations after a failure are not run and are
+     * reported as {ok: false, skipped: true}.
+     */
+    static JSONArray run(JSONArray ops, JSONObject options) throws JSONException {
+        boolean stopOnError = options != null && options.optBoolean("stopOnError", false);
+        boolean failed = false;
+        JSONArray results = new JSONArray();
+
+        for (int i = 0; i < ops.length(); i++) {
+            JSONObject op = ops.getJSONObject(i);
+            JSONObject result = new JSONObject();
+            result.put("op", op.optString("op"));
+            result.put("path", op.optString("path"));
+
+            if (failed) {
+                result.put("ok", false);
+                result.put("skipped", true);
+            } else {
+                try {
+                    run(op, result);
+                    result.put("ok", true);
+                } catch (Exception e) {
+                    result.put("ok", false);
+                    result.put("error", e.getMessage() == null ? e.toString() : e.getMessage());
+                    failed = stopOnError;
+                }
+            }
+            results.put(result);
+        }
+        return results;
+    }
+
+    private static void run(JSONObject op, JSONObject result) throws Exception {
+        String path = path(op.optString("path"));
+
+        switch (op.optString("op")) {
+            case "symlink":
+                symlink(path(op.optString("target")), path, op.optBoolean("force", false));
+                break;
+            case "chmod":
+                Os.chmod(path, mode(op.opt("mode")));
+                break;
+            case "mkdirs":
+                File dir = new File(path);
+                if (!dir.mkdirs() && !dir.isDirectory()) throw new IOException("mkdirs failed: " + path);
+                break;
+            case "rm":
+                remove(path, op.optBoolean("recursive", false));
+                break;
+            case "rename":
+                Os.rename(path, path(op.optString("target")));
+                break;
+            case "stat":
+                stat(path, op.optBoolean("followLinks", false), result);
+                break;
+            case "exists":
+                result.put("exists", exists(path, op.optBoolean("followLinks", false)));
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown operation: " + op.optString("op"));
+        }
+    }
+
+    /**
+     * Creates path as a symbolic link to target, without a process.
+     */
+    static void symlink(String target, String path, boolean force) throws ErrnoException {
+        if (force && exists(path, false)) Os.remove(path);
+        Os.symlink(target, path);
+    }
+
+    /**
+     * Whether path exists, a dangling symbolic link exists unless
+     * followLinks.
+     */
+    static boolean exists(String path, boolean followLinks) {
+        try {
+            if (followLinks) Os.stat(path);
+            else Os.lstat(path);
+            return true;
+        } catch (ErrnoException e) {
+            return false;
+        }
+    }
+
+    private static void stat(String path, boolean followLinks, JSONObject result)
+        throws ErrnoException, JSONException {
+        StructStat stat = followLinks ? Os.stat(path) : Os.lstat(path);
+        result.put("type", type(stat.st_mode));
+        result.put("size", stat.st_size);
+        result.put("mode", stat.st_mode & 07777);
+        result.put("mtime", stat.st_mtime * 1000);
+    }
+
+    private static String type(int mode) {
+        if (OsConstants.S_ISLNK(mode)) return "symlink";
+        if (OsConstants.S_ISDIR(mode)) return "directory";
+        if (OsConstants.S_ISREG(mode)) return "file";
+        return "other";
+    }
+
+    /**
+     * Deletes path, with recursive the contents of a directory first. A
+     * missing path is not an error, like rm -f; an unreadable directory is.
+     */
+    private static void remove(String path, boolean recursive) throws ErrnoException, IOException {
+        StructStat stat;
+        try {
+            stat = Os.lstat(path);
+        } catch (ErrnoException e) {
+            if (e.errno == OsConstants.ENOENT) return;
+            throw e;
+        }
+
+        if (recursive && OsConstants.S_ISDIR(stat.st_mode)) {
+            String[] children = new File(path).list();
+            if (children == null) throw new IOException("Unable to list " + path);
+            for (String child : children) {
+                remove(path + "/" + child, true);
+            }
+        }
+        Os.remove(path);
+    }
+
+    private static int mode(Object mode) {
+        if (mode instanceof Number) return ((Number) mode).intValue();
+        if (mode instanceof String) return Integer.parseInt((String) mode, 8);
+        throw new IllegalArgumentException("Invalid mode: " + mode);
+    }
+
+    private static String path(String path) throws IOException {
+        if (path == null || path.isEmpty()) throw new IOException("Path is required");
+        if (path.startsWith("file://")) return Uri.parse(path).getPath();
+        return path;
+    }
+}
@@ -0,0 +1,125 @@
+package com.foxdebug.system;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Reads whole text files. Local files (file:// uris and absolute paths) and
+ * content uris backed by a seekable file descriptor are read through a
+ * FileChannel: memory mapped from MMAP_THRESHOLD on, into a pooled direct
+ * buffer below it. Only content uris without a file descriptor are
+ * streamed. The sdcard plugin has the same reader, this plugin doesn't
+ * depend on it.
+ */
+class LocalRead {
+
+    private static final int MMAP_THRESHOLD = 256 * 1024;
+    private static final int POOL_SIZE = 4;
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+    private static final ArrayBlockingQueue<ByteBuffer> pool = new ArrayBlockingQueue<ByteBuffer>(POOL_SIZE);
+
+    private LocalRead() {}
+
+    static String readText(Context context, Uri uri, Charset charset) throws IOException {
+        File file = toFile(uri);
+        if (file != null) {
+            try (FileInputStream in = new FileInputStream(file)) {
+                return readText(in.getChannel(), charset);
+            }
+        }
+
+        ParcelFileDescriptor pfd = openFileDescriptor(context, uri);
+        if (pfd != null) {
+            try (FileInputStream in = new ParcelFileDescriptor.AutoCloseInputStream(pfd)) {
+                return readText(in.getChannel(), charset);
+            }
+        }
+
+        return new String(readStream(context, uri), charset);
+    }
+
+    /**
+     * The local file for a file:// uri or an absolute path, null for
+     * anything else.
+     */
+    private static File toFile(Uri uri) {
+        String scheme = uri.getScheme();
+        String path = uri.getPath();
+        if (path == null) return null;
+
+        if (ContentResolver.SCHEME_FILE.equals(scheme)) return new File(path);
+        if (scheme == null && path.startsWith("/")) return new File(path);
+        return null;
+    }
+
+    private static String readText(FileChannel channel, Charset charset) throws IOException {
+        long size = channel.size();
+        if (size >= MMAP_THRESHOLD) {
+            return charset.decode(channel.map(FileChannel.MapMode.READ_ONLY, 0, size)).toString();
+        }
+
+        ByteBuffer buffer = pool.poll();
+        if (buffer == null) buffer = ByteBuffer.allocateDirect(MMAP_THRESHOLD);
+        buffer.clear();
+        try {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) break;
+            }
+            buffer.flip();
+            return charset.decode(buffer).toString();
+        } finally {
+            pool.offer(buffer);
+        }
+    }
+
+    private static byte[] readStream(Context context, Uri uri) throws IOException {
+        InputStream in = context.getContentResolver().openInputStream(uri);
+        if (in == null) throw new FileNotFoundException("File not found");
+
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[STREAM_BUFFER_SIZE];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Opens a seekable file descriptor, null if the provider only streams
+     * (pipes report an unknown size).
+     */
+    private static ParcelFileDescriptor openFileDescriptor(Context context, Uri uri) {
+        ParcelFileDescriptor pfd;
+        try {
+            pfd = context.getContentResolver().openFileDescriptor(uri, "r");
+        } catch (Exception e) {
+            return null;
+        }
+
+        if (pfd == null) return null;
+        if (pfd.getStatSize() < 0) {
+            try {
+                pfd.close();
+            } catch (IOException ignored) {}
+            return null;
+        }
+        return pfd;
+    }
+}
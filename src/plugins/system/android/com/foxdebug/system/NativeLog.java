@@ -0,0 +1,227 @@
+package com.foxdebug.system;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import org.apache.cordova.CordovaWebView;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Native log lines for the webview's window.log. Any thread can write
+ * without locking; lines are handed to the webview in batches, at most
+ * once every FLUSH_INTERVAL_MS on a frame callback, or on the next frame
+ * once BATCH_SIZE are waiting, so logging doesn't post work to the main
+ * thread per line. The last RING_SIZE lines are kept and, on a crash,
+ * saved to be read after the restart.
+ */
+public class NativeLog {
+
+    public static final String ERROR = "error";
+    public static final String WARN = "warn";
+    public static final String INFO = "info";
+    public static final String DEBUG = "debug";
+
+    private static final String[] LEVELS = { ERROR, WARN, INFO, DEBUG };
+    private static final int RING_SIZE = 256;
+    private static final int BATCH_SIZE = 100;
+    private static final int MAX_PENDING = 1000;
+    private static final long FLUSH_INTERVAL_MS = 100;
+    private static final String CRASH_FILE = "native-log.json";
+
+    private static final AtomicReferenceArray<JSONObject> ring = new AtomicReferenceArray<JSONObject>(RING_SIZE);
+    private static final AtomicLong written = new AtomicLong();
+    private static final ConcurrentLinkedQueue<JSONObject> pending = new ConcurrentLinkedQueue<JSONObject>();
+    private static final AtomicInteger pendingCount = new AtomicInteger();
+    private static final AtomicInteger dropped = new AtomicInteger();
+    private static final AtomicBoolean scheduled = new AtomicBoolean();
+    private static final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private static final AtomicLong windowStart = new AtomicLong();
+    private static final AtomicInteger windowCount = new AtomicInteger();
+
+    private static volatile int maxLevel = 3; // debug
+    private static volatile int maxPerSecond = 200;
+    private static volatile CordovaWebView webView;
+    private static volatile File crashFile;
+
+    private NativeLog() {}
+
+    static void attach(CordovaWebView view, File filesDir) {
+        webView = view;
+        crashFile = new File(filesDir, CRASH_FILE);
+        if (pendingCount.get() > 0) schedule(false);
+    }
+
+    static void detach() {
+        webView = null;
+    }
+
+    /**
+     * Options: level, lines above it are not recorded, and maxPerSecond,
+     * lines beyond it are dropped and counted (errors are never dropped).
+     */
+    static void configure(JSONObject options) {
+        if (options == null) return;
+        int level = level(options.optString("level", LEVELS[maxLevel]));
+        if (level >= 0) maxLevel = level;
+        maxPerSecond = options.optInt("maxPerSecond", maxPerSecond);
+    }
+
+    public static void log(String level, String message) {
+        int rank = level(level);
+        if (rank < 0) rank = level(INFO);
+        if (rank > maxLevel) return;
+        if (rank > 0 && !allow()) {
+            dropped.incrementAndGet();
+            return;
+        }
+
+        JSONObject entry = new JSONObject();
+        try {
+            entry.put("time", java.lang.System.currentTimeMillis());
+            entry.put("level", LEVELS[rank]);
+            entry.put("message", message);
+        } catch (JSONException e) {
+            return;
+        }
+
+        ring.set((int) (written.getAndIncrement() % RING_SIZE), entry);
+
+        pending.add(entry);
+        if (pendingCount.incrementAndGet() > MAX_PENDING && pending.poll() != null) {
+            pendingCount.decrementAndGet();
+            dropped.incrementAndGet();
+        }
+        schedule(pendingCount.get() >= BATCH_SIZE);
+    }
+
+    /**
+     * The last RING_SIZE lines, oldest first.
+     */
+    static JSONArray recent() {
+        long end = written.get();
+        long start = Math.max(0, end - RING_SIZE);
+        JSONArray entries = new JSONArray();
+        for (long i = start; i < end; i++) {
+            JSONObject entry = ring.get((int) (i % RING_SIZE));
+            if (entry != null) entries.put(entry);
+        }
+        return entries;
+    }
+
+    /**
+     * Saves the recent lines for lastCrash(), called from the uncaught
+     * exception handler.
+     */
+    static void saveCrash() {
+        File file = crashFile;
+        if (file == null) return;
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(recent().toString().getBytes(StandardCharsets.UTF_8));
+            out.getFD().sync();
+        } catch (IOException ignored) {}
+    }
+
+    /**
+     * Lines saved by the last crash, null if there was none.
+     */
+    static JSONArray lastCrash() {
+        File file = crashFile;
+        if (file == null || !file.isFile()) return null;
+        try (InputStream in = new FileInputStream(file)) {
+            byte[] bytes = new byte[(int) file.length()];
+            int read = 0;
+            while (read < bytes.length) {
+                int count = in.read(bytes, read, bytes.length - read);
+                if (count < 0) break;
+                read += count;
+            }
+            return new JSONArray(new String(bytes, 0, read, StandardCharsets.UTF_8));
+        } catch (IOException | JSONException e) {
+            return null;
+        }
+    }
+
+    static void clearCrash() {
+        File file = crashFile;
+        if (file != null) file.delete();
+    }
+
+    private static boolean allow() {
+        long now = android.os.SystemClock.elapsedRealtime();
+        long start = windowStart.get();
+        if (now - start >= 1000 && windowStart.compareAndSet(start, now)) {
+            windowCount.set(0);
+        }
+        return windowCount.incrementAndGet() <= maxPerSecond;
+    }
+
+    private static void schedule(final boolean soon) {
+        if (webView == null || !scheduled.compareAndSet(false, true)) return;
+        mainHandler.post(
+            new Runnable() {
+                @Override
+                public void run() {
+                    if (soon) {
+                        Choreographer.getInstance().postFrameCallback(flush);
+                    } else {
+                        Choreographer.getInstance().postFrameCallbackDelayed(flush, FLUSH_INTERVAL_MS);
+                    }
+                }
+            }
+        );
+    }
+
+    private static final Choreographer.FrameCallback flush = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            scheduled.set(false);
+            CordovaWebView view = webView;
+            if (view == null) return;
+
+            StringBuilder js = new StringBuilder("javascript:if(window.log){");
+            int lost = dropped.getAndSet(0);
+            if (lost > 0) {
+                js.append("window.log('warn',")
+                    .append(JSONObject.quote(lost + " native log lines dropped"))
+                    .append(");");
+            }
+
+            JSONObject entry;
+            int count = 0;
+            while (count < BATCH_SIZE && (entry = pending.poll()) != null) {
+                pendingCount.decrementAndGet();
+                count++;
+                js.append("window.log('")
+                    .append(entry.optString("level"))
+                    .append("',")
+                    .append(JSONObject.quote(entry.optString("message")))
+                    .append(");");
+            }
+            js.append("}");
+
+            if (count > 0 || lost > 0) view.loadUrl(js.toString());
+            if (pendingCount.get() > 0) schedule(pendingCount.get() >= BATCH_SIZE);
+        }
+    };
+
+    private static int level(String level) {
+        for (int i = 0; i < LEVELS.length; i++) {
+            if (LEVELS[i].equalsIgnoreCase(level)) return i;
+        }
+        return -1;
+    }
+}
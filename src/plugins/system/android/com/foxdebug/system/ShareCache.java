@@ -0,0 +1,196 @@
+package com.foxdebug.system;
+
+import android.net.Uri;
+import android.system.ErrnoException;
+import android.system.Os;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Copies of files FileProvider can't expose, in cacheDir/shared. Copies are
+ * content addressed, shared/<xxh64>-<size>/<name>, so sharing the same file
+ * again reuses its copy; another name for the same content is a hard link
+ * to it. Entries are evicted least recently used first once they take more
+ * than MAX_BYTES.
+ */
+class ShareCache {
+
+    private static final String DIRECTORY = "shared";
+    private static final long MAX_BYTES = 256L * 1024 * 1024;
+    private static final String TEMP_PREFIX = ".~";
+
+    private final File root;
+    private final Checksums checksums;
+
+    ShareCache(File cacheDir, Checksums checksums) {
+        this.root = new File(cacheDir, DIRECTORY);
+        this.checksums = checksums;
+    }
+
+    /**
+     * A copy of source named displayName (or the name of source).
+     */
+    synchronized File get(File source, String displayName) throws Exception {
+        String name = name(source, displayName);
+        long size = source.length();
+        String key = checksums.file(Uri.fromFile(source).toString(), Checksums.XXH64) + "-" + Long.toHexString(size);
+
+        File entry = new File(root, key);
+        File target = new File(entry, name);
+        if (target.isFile() && target.length() == size) {
+            touch(entry);
+            return target;
+        }
+
+        if (!entry.isDirectory() && !entry.mkdirs()) {
+            throw new IOException("Unable to create shared cache directory");
+        }
+
+        File existing = existing(entry, size);
+        if (existing == null || !link(existing, target)) {
+            copy(source, target);
+        }
+
+        touch(entry);
+        evict(entry);
+        return target;
+    }
+
+    /**
+     * A complete copy in entry, under any name.
+     */
+    private static File existing(File entry, long size) {
+        File[] files = entry.listFiles();
+        if (files == null) return null;
+        for (File file : files) {
+            if (file.isFile() && !file.getName().startsWith(TEMP_PREFIX) && file.length() == size) {
+                return file;
+            }
+        }
+        return null;
+    }
+
+    private static boolean link(File existing, File target) {
+        try {
+            target.delete();
+            Os.link(existing.getAbsolutePath(), target.getAbsolutePath());
+            return true;
+        } catch (ErrnoException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Copies to a temporary file renamed into place, so a copy cut short is
+     * never mistaken for a complete one.
+     */
+    private static void copy(File source, File target) throws IOException {
+        File temp = new File(target.getParentFile(), TEMP_PREFIX + target.getName());
+        try (
+            FileChannel in = new FileInputStream(source).getChannel();
+            FileChannel out = new FileOutputStream(temp).getChannel()
+        ) {
+            long size = in.size();
+            long position = 0;
+            while (position < size) {
+                long count = in.transferTo(position, size - position, out);
+                if (count <= 0) break;
+                position += count;
+            }
+        } catch (IOException e) {
+            temp.delete();
+            throw e;
+        }
+
+        if (!temp.renameTo(target)) {
+            temp.delete();
+            throw new IOException("Unable to write " + target.getAbsolutePath());
+        }
+    }
+
+    /**
+     * The modification time of an entry directory is its last use.
+     */
+    private static void touch(File entry) {
+        entry.setLastModified(java.lang.System.currentTimeMillis());
+    }
+
+    /**
+     * Deletes the least recently used entries, except keep, until the cache
+     * fits MAX_BYTES. Files directly in shared are copies made before the
+     * cache was content addressed and are evicted the same way.
+     */
+    private void evict(File keep) {
+        File[] entries = root.listFiles();
+        if (entries == null) return;
+
+        List<File> candidates = new ArrayList<File>();
+        long total = 0;
+        for (File entry : entries) {
+            total += size(entry);
+            if (!entry.equals(keep)) candidates.add(entry);
+        }
+        if (total <= MAX_BYTES) return;
+
+        Collections.sort(
+            candidates,
+            new Comparator<File>() {
+                @Override
+                public int compare(File a, File b) {
+                    return Long.compare(a.lastModified(), b.lastModified());
+                }
+            }
+        );
+
+        for (File entry : candidates) {
+            if (total <= MAX_BYTES) break;
+            long size = size(entry);
+            if (delete(entry)) total -= size;
+        }
+    }
+
+    /**
+     * Names in an entry are links to one file, it is counted once.
+     */
+    private static long size(File entry) {
+        if (!entry.isDirectory()) return entry.length();
+
+        File[] files = entry.listFiles();
+        long size = 0;
+        if (files == null) return size;
+        for (File file : files) {
+            size = Math.max(size, file.length());
+        }
+        return size;
+    }
+
+    private static boolean delete(File file) {
+        File[] children = file.isDirectory() ? file.listFiles() : null;
+        if (children != null) {
+            for (File child : children) {
+                child.delete();
+            }
+        }
+        return file.delete();
+    }
+
+    private static String name(File source, String displayName) {
+        if (displayName != null && !displayName.isEmpty()) {
+            displayName = new File(displayName).getName();
+        }
+        if (displayName == null || displayName.isEmpty()) {
+            displayName = source.getName();
+        }
+        if (displayName == null || displayName.isEmpty() || displayName.startsWith(TEMP_PREFIX)) {
+            displayName = "shared-file";
+        }
+        return displayName;
+    }
+}
@@ -42,6 +42,7 @@ import java.lang.reflect.Method;
 import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -68,9 +69,6 @@ import java.io.OutputStream;
 import java.io.IOException;
 import android.webkit.MimeTypeMap;
 
-// DocumentFile import (AndroidX library)
-import androidx.documentfile.provider.DocumentFile;
-
 // Java I/O imports
 import java.io.File;
 import java.io.FileInputStream;
@@ -107,8 +105,6 @@ import android.os.Build;
 import android.graphics.ImageDecoder;
 
 
-import java.security.MessageDigest;
-import java.security.MessageDigest;
 
 
 
@@ -126,6 +122,10 @@ public class System extends CordovaPlugin {
     private CordovaWebView webView;
     private String fileProviderAuthority;
     private RewardPassManager rewardPassManager;
+    private AutosaveJournal autosaveJournal;
+    private Checksums checksums;
+    private ShareCache shareCache;
+    private static volatile JSONObject availableEncodings;
 
     public void initialize(CordovaInterface cordova, CordovaWebView webView) {
         super.initialize(cordova, webView);
@@ -133,6 +133,11 @@ public class System extends CordovaPlugin {
         this.activity = cordova.getActivity();
         this.webView = webView;
         this.rewardPassManager = new RewardPassManager(this.context);
+        this.checksums = new Checksums(this.context);
+        this.shareCache = new ShareCache(this.context.getCacheDir(), this.checksums);
+        this.autosaveJournal = new AutosaveJournal(
+            new File(this.context.getFilesDir(), "autosave")
+        );
         this.activity.runOnUiThread(
             new Runnable() {
                 @Override
@@ -142,7 +147,11 @@ public class System extends CordovaPlugin {
             }
         );
 
+        NativeLog.attach(webView, this.context.getFilesDir());
+
         // Set up global exception handler
+        final Thread.UncaughtExceptionHandler defaultHandler =
+            Thread.getDefaultUncaughtExceptionHandler();
         Thread.setDefaultUncaughtExceptionHandler(
             new Thread.UncaughtExceptionHandler() {
                 @Override
@@ -158,11 +167,13 @@ public class System extends CordovaPlugin {
                         stackTrace
                     );
 
-                    sendLogToJavaScript("error", errorMsg);
+                    NativeLog.log(NativeLog.ERROR, errorMsg);
+                    NativeLog.saveCrash();
 
                     // rethrow to the default handler
-                    Thread.getDefaultUncaughtExceptionHandler()
-                        .uncaughtException(thread, ex);
+                    if (defaultHandler != null) {
+                        defaultHandler.uncaughtException(thread, ex);
+                    }
                 }
             }
         );
@@ -184,6 +195,8 @@ public class System extends CordovaPlugin {
             case "get-webkit-info":
             case "file-action":
             case "checksumText":
+            case "checksum-file":
+            case "checksum-files":
             case "is-powersave-mode":
             case "get-app-info":
             case "add-shortcut":
@@ -199,9 +212,19 @@ public class System extends CordovaPlugin {
             case "get-available-encodings":
             case "decode":
             case "encode":
+            case "transcode-file":
+            case "detect-encoding":
+            case "list-dir":
+            case "fs-batch":
+            case "get-native-logs":
+            case "writeText":
+            case "write-file":
+            case "write-files":
             case "copyToUri":
             case "compare-file-text":
             case "compare-texts":
+            case "fingerprint-file":
+            case "compare-file-fingerprint":
             case "pin-file-shortcut":
                 break;
             case "get-configuration":
@@ -279,24 +302,6 @@ public class System extends CordovaPlugin {
             case "listChildren":
                 callbackContext.success(listChildren(args.getString(0)));
                 return true;
-            case "writeText":
-                {
-                    try {
-                        String filePath = args.getString(0);
-                        String content = args.getString(1);
-
-                        Files.write(Paths.get(filePath),
-                            Collections.singleton(content),
-                            StandardOpenOption.CREATE,
-                            StandardOpenOption.TRUNCATE_EXISTING);
-
-                        callbackContext.success("File written successfully");
-                    } catch (Exception e) {
-                        callbackContext.error("Failed to write file: " + e.getMessage());
-                    }
-                    return true;
-                }
-
             case "getArch":
                 String arch;
 
@@ -388,6 +393,35 @@ public class System extends CordovaPlugin {
                     callbackContext.error("set exec failed");
                 }
 
+                return true;
+            case "configure-native-log":
+                NativeLog.configure(args.optJSONObject(0));
+                callbackContext.success();
+                return true;
+            case "get-icon-cache-stats":
+                callbackContext.success(Ui.Icons.getCacheStats());
+                return true;
+            case "clear-icon-cache":
+                Ui.Icons.clearCache();
+                callbackContext.success();
+                return true;
+            case "autosave-snapshot":
+                autosaveJournal.snapshot(args.getString(0), args.getString(1), callbackContext);
+                return true;
+            case "autosave-delta":
+                autosaveJournal.delta(args.getString(0), args.getJSONArray(1), callbackContext);
+                return true;
+            case "autosave-discard":
+                autosaveJournal.discard(args.getString(0), callbackContext);
+                return true;
+            case "autosave-flush":
+                autosaveJournal.flush(callbackContext);
+                return true;
+            case "autosave-replay":
+                autosaveJournal.replay(callbackContext);
+                return true;
+            case "autosave-clear":
+                autosaveJournal.clear(callbackContext);
                 return true;
             default:
                 return false;
@@ -400,103 +434,7 @@ public class System extends CordovaPlugin {
                     public void run() {
                         switch (action) {
                             case "copyToUri":
-                                try {
-                                    //srcUri is a file
-                                    Uri srcUri = Uri.parse(args.getString(0));
-
-                                    //destUri is a directory
-                                    Uri destUri = Uri.parse(args.getString(1));
-
-                                    //create a file named this into the dest Directory and copy the srcUri into it
-                                    String fileName = args.getString(2);
-
-                                    InputStream in = null;
-                                    OutputStream out = null;
-                                    try {
-                                        // Open input stream from the source URI
-                                        if ("file".equalsIgnoreCase(srcUri.getScheme())) {
-                                            File file = new File(srcUri.getPath()); in = new FileInputStream(file);
-                                        } else { in = context.getContentResolver().openInputStream(srcUri);
-                                        }
-
-                                        // Create the destination file using DocumentFile for better URI handling
-                                        DocumentFile destFile = null;
-
-                                        if ("file".equalsIgnoreCase(destUri.getScheme())) {
-                                            // Handle file:// scheme using DocumentFile
-                                            File destDir = new File(destUri.getPath());
-                                            if (!destDir.exists()) {
-                                                destDir.mkdirs(); // Create directory if it doesn't exist
-                                            }
-                                            DocumentFile destDocDir = DocumentFile.fromFile(destDir);
-
-                                            // Check if file already exists and delete it
-                                            DocumentFile existingFile = destDocDir.findFile(fileName);
-                                            if (existingFile != null && existingFile.exists()) {
-                                                existingFile.delete();
-                                            }
-
-                                            // Create new file
-                                            String mimeType = getMimeTypeFromExtension(fileName);
-                                            destFile = destDocDir.createFile(mimeType, fileName);
-                                        } else {
-                                            // Handle content:// scheme using DocumentFile
-                                            DocumentFile destDocDir = DocumentFile.fromTreeUri(context, destUri);
-
-                                            if (destDocDir == null || !destDocDir.exists() || !destDocDir.isDirectory()) {
-                                                callbackContext.error("Destination directory does not exist or is not accessible");
-                                                return;
-                                            }
-
-                                            // Check if file already exists and delete it
-                                            DocumentFile existingFile = destDocDir.findFile(fileName);
-                                            if (existingFile != null && existingFile.exists()) {
-                                                existingFile.delete();
-                                            }
-
-                                            // Create new file
-                                            String mimeType = getMimeTypeFromExtension(fileName);
-                                            destFile = destDocDir.createFile(mimeType, fileName);
-                                        }
-
-                                        if (destFile == null || !destFile.exists()) {
-                                            callbackContext.error("Failed to create destination file");
-                                            return;
-                                        }
-
-                                        // Open output stream to the created file
-                                        out = context.getContentResolver().openOutputStream(destFile.getUri());
-
-                                        if ( in == null || out == null) {
-                                            callbackContext.error("uri streams are null");
-                                            return;
-                                        }
-
-                                        // Copy stream
-                                        byte[] buffer = new byte[8192];
-                                        int len;
-                                        while ((len = in .read(buffer)) > 0) {
-                                            out.write(buffer, 0, len);
-                                        }
-
-                                        out.flush();
-                                        callbackContext.success();
-                                    } catch (IOException e) {
-                                        e.printStackTrace();
-                                        callbackContext.error(e.toString());
-                                    } finally {
-                                        try {
-                                            if ( in != null) in .close();
-                                            if (out != null) out.close();
-                                        } catch (IOException e) {
-                                            e.printStackTrace();
-                                            callbackContext.error(e.toString());
-                                        }
-                                    }
-                                } catch (Exception e) {
-                                    e.printStackTrace();
-                                    callbackContext.error(e.toString());
-                                }
+                                copyToUri(args, callbackContext);
                                 break;
                             case "get-webkit-info":
                                 getWebkitInfo(callbackContext);
@@ -560,38 +498,50 @@ public class System extends CordovaPlugin {
                             case "encode":
                                 encode(arg1, arg2, callbackContext);
                                 break;
+                            case "writeText":
+                                writeText(arg1, arg2, callbackContext);
+                                break;
+                            case "write-file":
+                                writeFile(args, callbackContext);
+                                break;
+                            case "write-files":
+                                writeFiles(args.optJSONArray(0), args.optJSONObject(1), callbackContext);
+                                break;
+                            case "list-dir":
+                                listDir(arg1, args.optJSONObject(1), callbackContext);
+                                break;
+                            case "fs-batch":
+                                fsBatch(args.optJSONArray(0), args.optJSONObject(1), callbackContext);
+                                break;
+                            case "get-native-logs":
+                                getNativeLogs(args.optBoolean(0, false), callbackContext);
+                                break;
+                            case "detect-encoding":
+                                detectEncoding(arg1, args.optInt(1, 0), callbackContext);
+                                break;
+                            case "transcode-file":
+                                transcodeFile(arg1, arg2, arg3, arg4, callbackContext);
+                                break;
                             case "compare-file-text":
                                 compareFileText(arg1, arg2, arg3, callbackContext);
                                 break;
                             case "compare-texts":
                                 compareTexts(arg1, arg2, callbackContext);
                                 break;
+                            case "fingerprint-file":
+                                fingerprintFile(arg1, callbackContext);
+                                break;
+                            case "compare-file-fingerprint":
+                                compareFileFingerprint(arg1, args.optJSONObject(1), callbackContext);
+                                break;
                             case "checksumText":
-                            
-                                cordova.getThreadPool().execute(() -> {
-                                    try {
-                                        
-                                        MessageDigest digest = MessageDigest.getInstance("SHA-256");
-
-                                        byte[] hash = digest.digest(args.getString(0).getBytes("UTF-8"));
-
-                                        StringBuilder hexString = new StringBuilder();
-
-                                        for (byte b : hash) {
-                                            String hex = Integer.toHexString(0xff & b);
-
-                                            if (hex.length() == 1) hexString.append('0');
-
-                                            hexString.append(hex);
-                                        }
-
-
-                                        callbackContext.success(hexString.toString());
-                                    } catch (Exception e) {
-                                        callbackContext.error(e.getMessage());
-                                    }
-                                });
-
+                                checksumText(args.optString(0, null), args.optString(1, Checksums.SHA256), callbackContext);
+                                break;
+                            case "checksum-file":
+                                checksumFile(arg1, args.optString(1, Checksums.SHA256), callbackContext);
+                                break;
+                            case "checksum-files":
+                                checksumFiles(args.optJSONArray(0), args.optString(1, Checksums.SHA256), callbackContext);
                                 break;
                             default:
                                 break;
@@ -603,19 +553,61 @@ public class System extends CordovaPlugin {
         return true;
     }
 
-    private void sendLogToJavaScript(String level, String message) {
-        final String js =
-            "window.log('" + level + "', " + JSONObject.quote(message) + ");";
-        cordova
-            .getActivity()
-            .runOnUiThread(
-                new Runnable() {
+    /**
+     * Returns {recent, lastCrash}: the last native log lines and the lines
+     * saved by the last crash (null if none), which clearCrash deletes.
+     */
+    private void getNativeLogs(boolean clearCrash, CallbackContext callback) {
+        try {
+            JSONObject result = new JSONObject();
+            result.put("recent", NativeLog.recent());
+            JSONArray lastCrash = NativeLog.lastCrash();
+            result.put("lastCrash", lastCrash == null ? JSONObject.NULL : lastCrash);
+            if (clearCrash) NativeLog.clearCrash();
+            callback.success(result);
+        } catch (Exception e) {
+            callback.error(e.toString());
+        }
+    }
+
+    /**
+     * args: source url, destination directory url, file name and whether to
+     * report progress. Progress is sent as {loaded, total} keeping the
+     * callback, the result is {uri, size}.
+     */
+    private void copyToUri(JSONArray args, final CallbackContext callback) {
+        try {
+            String fileName = args.getString(2);
+            UriCopy.Progress progress = null;
+            if (args.optBoolean(3, false)) {
+                progress = new UriCopy.Progress() {
                     @Override
-                    public void run() {
-                        webView.loadUrl("javascript:" + js);
+                    public void update(long loaded, long total) {
+                        try {
+                            JSONObject status = new JSONObject();
+                            status.put("loaded", loaded);
+                            status.put("total", total);
+                            PluginResult result = new PluginResult(PluginResult.Status.OK, status);
+                            result.setKeepCallback(true);
+                            callback.sendPluginResult(result);
+                        } catch (JSONException ignored) {}
                     }
-                }
+                };
+            }
+
+            callback.success(
+                UriCopy.copy(
+                    context,
+                    args.getString(0),
+                    args.getString(1),
+                    fileName,
+                    getMimeTypeFromExtension(fileName),
+                    progress
+                )
             );
+        } catch (Exception e) {
+            callback.error(e.toString());
+        }
     }
 
     // Helper method to determine MIME type using Android's built-in MimeTypeMap
@@ -756,61 +748,30 @@ public class System extends CordovaPlugin {
                     return;
                 }
 
-                Path path = file.toPath();
-                fileContent = new String(Files.readAllBytes(path), charset);
+                fileContent = LocalRead.readText(context, uri, charset);
 
             } else if ("content".equalsIgnoreCase(uri.getScheme())) {
                 // Handle content:// URIs (including SAF tree URIs)
-                InputStream inputStream = null;
-                try {
-                    String uriString = fileUri;
-                    Uri resolvedUri = uri;
-                    
-                    // Check if this is a SAF tree URI with :: separator
-                    if (uriString.contains("::")) {
-                        try {
-                            // Split into tree URI and document ID
-                            String[] parts = uriString.split("::", 2);
-                            String treeUriStr = parts[0];
-                            String docId = parts[1];
-                            
-                            // Build document URI directly from tree URI and document ID
-                            Uri treeUri = Uri.parse(treeUriStr);
-                            resolvedUri = DocumentsContract.buildDocumentUriUsingTree(treeUri, docId);
-                        } catch (Exception e) {
-                            callback.error("SAF_FALLBACK: Invalid SAF URI format - " + e.getMessage());
-                            return;
-                        }
-                    }
-                    
-                    // Try to open the resolved URI
-                    inputStream = context.getContentResolver().openInputStream(resolvedUri);
-                    
-                    if (inputStream == null) {
-                        callback.error("Cannot open file");
-                        return;
-                    }
+                Uri resolvedUri = uri;
 
-                    StringBuilder sb = new StringBuilder();
-                    try (BufferedReader reader = new BufferedReader(
-                            new InputStreamReader(inputStream, charset))) {
-                        char[] buffer = new char[8192];
-                        int charsRead;
-                        while ((charsRead = reader.read(buffer)) != -1) {
-                            sb.append(buffer, 0, charsRead);
-                        }
-                    }
-                    fileContent = sb.toString();
-                    
-                } finally {
-                    if (inputStream != null) {
-                        try {
-                            inputStream.close();
-                        } catch (IOException closeError) {
-                            Log.w(TAG, "Failed to close input stream while reading file.", closeError);
-                        }
+                // Check if this is a SAF tree URI with :: separator
+                if (fileUri.contains("::")) {
+                    try {
+                        // Split into tree URI and document ID
+                        String[] parts = fileUri.split("::", 2);
+                        String treeUriStr = parts[0];
+                        String docId = parts[1];
+
+                        // Build document URI directly from tree URI and document ID
+                        Uri treeUri = Uri.parse(treeUriStr);
+                        resolvedUri = DocumentsContract.buildDocumentUriUsingTree(treeUri, docId);
+                    } catch (Exception e) {
+                        callback.error("SAF_FALLBACK: Invalid SAF URI format - " + e.getMessage());
+                        return;
                     }
                 }
+
+                fileContent = LocalRead.readText(context, resolvedUri, charset);
             } else {
                 callback.error("Unsupported URI scheme: " + uri.getScheme());
                 return;
@@ -834,6 +795,71 @@ public class System extends CordovaPlugin {
         }
     }
 
+    private void checksumText(String text, String algorithm, CallbackContext callback) {
+        if (text == null) {
+            callback.error("Text is required");
+            return;
+        }
+
+        try {
+            callback.success(Checksums.text(text, algorithm));
+        } catch (Exception e) {
+            callback.error(e.getMessage());
+        }
+    }
+
+    private void checksumFile(String fileUri, String algorithm, CallbackContext callback) {
+        try {
+            callback.success(checksums.file(fileUri, algorithm));
+        } catch (Exception e) {
+            callback.error(e.toString());
+        }
+    }
+
+    /**
+     * @param callback Returns [{url, hash}] or [{url, error}] in the order of
+     *                 fileUris
+     */
+    private void checksumFiles(JSONArray fileUris, String algorithm, CallbackContext callback) {
+        if (fileUris == null) {
+            callback.error("File urls are required");
+            return;
+        }
+
+        try {
+            callback.success(checksums.files(fileUris, algorithm));
+        } catch (Exception e) {
+            callback.error(e.toString());
+        }
+    }
+
+    private void fingerprintFile(String fileUri, CallbackContext callback) {
+        try {
+            callback.success(FileFingerprint.of(context, fileUri));
+        } catch (Exception e) {
+            callback.error(e.toString());
+        }
+    }
+
+    /**
+     * Checks a file against a fingerprint from fingerprintFile without
+     * reading it when size and time settle it.
+     *
+     * @param callback Returns {status, fingerprint}, status is 0 (same),
+     *                 1 (changed) or 2 (unknown, compare the text)
+     */
+    private void compareFileFingerprint(
+        String fileUri,
+        JSONObject fingerprint,
+        CallbackContext callback
+    ) {
+        try {
+            callback.success(FileFingerprint.compare(context, fileUri, fingerprint));
+        } catch (Exception e) {
+            callback.error(e.toString());
+        }
+    }
+
     /**
      * Compares two text strings.
      * This method runs in a background thread to avoid blocking the UI
@@ -870,19 +896,57 @@ public class System extends CordovaPlugin {
         }
     }
 
+    /**
+     * Converts src from srcCharset to destCharset into dest in a stream,
+     * for files too large to pass through decode/encode.
+     *
+     * @param callback Returns {bytesRead, bytesWritten}
+     */
+    private void transcodeFile(
+        String src,
+        String srcCharset,
+        String dest,
+        String destCharset,
+        CallbackContext callback
+    ) {
+        try {
+            callback.success(Transcoder.transcode(context, src, srcCharset, dest, destCharset));
+        } catch (Exception e) {
+            callback.error(e.toString());
+        }
+    }
+
+    /**
+     * Ranked guesses for the charset of a file, from its first sampleSize
+     * bytes (0 for the default).
+     *
+     * @param callback Returns [{encoding, confidence}], empty for binary
+     */
+    private void detectEncoding(String fileUri, int sampleSize, CallbackContext callback) {
+        try {
+            callback.success(EncodingDetector.detect(context, fileUri, sampleSize));
+        } catch (Exception e) {
+            callback.error(e.toString());
+        }
+    }
+
     private void getAvailableEncodings(CallbackContext callback) {
         try {
-            Map < String, Charset > charsets = Charset.availableCharsets();
-            JSONObject result = new JSONObject();
-            for (Map.Entry < String, Charset > entry: charsets.entrySet()) {
-                JSONObject obj = new JSONObject();
-                Charset charset = entry.getValue();
-                obj.put("label", charset.displayName());
-                obj.put("aliases", new JSONArray(charset.aliases()));
-                obj.put("name", charset.name());
-                result.put(charset.name(), obj);
+            // the charsets don't change while the app runs
+            if (availableEncodings == null) {
+                Map < String, Charset > charsets = Charset.availableCharsets();
+                JSONObject result = new JSONObject();
+                for (Map.Entry < String, Charset > entry: charsets.entrySet()) {
+                    JSONObject obj = new JSONObject();
+                    Charset charset = entry.getValue();
+                    obj.put("label", charset.displayName());
+                    obj.put("aliases", new JSONArray(charset.aliases()));
+                    obj.put("name", charset.name());
+                    result.put(charset.name(), obj);
+                }
+                availableEncodings = result;
             }
-            callback.success(result);
+            callback.success(availableEncodings);
         } catch (Exception e) {
             callback.error(e.toString());
         }
@@ -977,13 +1041,8 @@ public class System extends CordovaPlugin {
 
     public boolean createSymlink(String target, String linkPath) {
         try {
-            Process process = Runtime.getRuntime().exec(new String[] {
-                "ln",
-                "-s",
-                target,
-                linkPath
-            });
-            return process.waitFor() == 0;
+            FileOps.symlink(target, linkPath, false);
+            return true;
         } catch (Exception e) {
             return false;
         }
@@ -1004,6 +1063,85 @@ public class System extends CordovaPlugin {
         return parent != null ? parent.getAbsolutePath() : null;
     }
 
+    private void writeText(String path, String content, CallbackContext callback) {
+        try {
+            // Files.write(Iterable) ended the text with a line separator,
+            // callers rely on it
+            String text = content + java.lang.System.lineSeparator();
+            AtomicWrite.write(path, text.getBytes(StandardCharsets.UTF_8), true);
+            callback.success("File written successfully");
+        } catch (Exception e) {
+            callback.error("Failed to write file: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Replaces a local file atomically. args: path, content (text, or an
+     * ArrayBuffer with options.binary, which cordova.exec sends as base64),
+     * options {binary, sync (default true)}.
+     */
+    private void writeFile(JSONArray args, CallbackContext callback) {
+        try {
+            JSONObject options = args.optJSONObject(2);
+            boolean binary = options != null && options.optBoolean("binary");
+            boolean sync = options == null || options.optBoolean("sync", true);
+            byte[] data = binary
+                ? Base64.decode(args.getString(1), Base64.DEFAULT)
+                : args.getString(1).getBytes(StandardCharsets.UTF_8);
+
+            long start = java.lang.System.nanoTime();
+            AtomicWrite.write(args.getString(0), data, sync);
+            JSONObject result = new JSONObject();
+            result.put("ms", (java.lang.System.nanoTime() - start) / 1000000);
+            callback.success(result);
+        } catch (Exception e) {
+            callback.error(e.toString());
+        }
+    }
+
+    /**
+     * Writes many files atomically and in parallel, see
+     * AtomicWrite.writeAll. options {sync (default true)}.
+     */
+    private void writeFiles(JSONArray files, JSONObject options, CallbackContext callback) {
+        if (files == null) {
+            callback.error("Files are required");
+            return;
+        }
+
+        try {
+            boolean sync = options == null || options.optBoolean("sync", true);
+            callback.success(AtomicWrite.writeAll(files, sync));
+        } catch (Exception e) {
+            callback.error(e.toString());
+        }
+    }
+
+    /**
+     * Lists a directory with the attributes of every entry in one call,
+     * see DirectoryListing for the options.
+     */
+    private void listDir(String path, JSONObject options, CallbackContext callback) {
+        try {
+            callback.success(DirectoryListing.list(path, options));
+        } catch (Exception e) {
+            callback.error(e.toString());
+        }
+    }
+
+    private void fsBatch(JSONArray ops, JSONObject options, CallbackContext callback) {
+        if (ops == null) {
+            callback.error("Operations are required");
+            return;
+        }
+
+        try {
+            callback.success(FileOps.run(ops, options));
+        } catch (Exception e) {
+            callback.error(e.toString());
+        }
+    }
+
     public JSONArray listChildren(String path) throws JSONException {
         File dir = new File(path);
         JSONArray result = new JSONArray();
@@ -1838,6 +1976,21 @@ public class System extends CordovaPlugin {
         callback.sendPluginResult(result);
     }
 
+    @Override
+    public void onDestroy() {
+        NativeLog.detach();
+        autosaveJournal.shutdown();
+        checksums.flush();
+        Ui.Icons.clearCache();
+        super.onDestroy();
+    }
+
+    @Override
+    public void onPause(boolean multitasking) {
+        checksums.flush();
+        super.onPause(multitasking);
+    }
+
     @Override
     public void onNewIntent(Intent intent) {
         if (intentHandler != null) {
@@ -1926,7 +2079,7 @@ public class System extends CordovaPlugin {
                 return FileProvider.getUriForFile(context, authority, originalFile);
             } catch (IllegalArgumentException | SecurityException ex) {
                 try {
-                    File cacheCopy = ensureShareableCopy(originalFile, filename);
+                    File cacheCopy = shareCache.get(originalFile, filename);
                     return FileProvider.getUriForFile(context, authority, cacheCopy);
                 } catch (Exception copyError) {
                     Log.e("System", "Failed to expose file via FileProvider", copyError);
@@ -1937,65 +2090,6 @@ public class System extends CordovaPlugin {
         return uri;
     }
 
-    private File ensureShareableCopy(File source, String displayName) throws IOException {
-        File cacheRoot = new File(context.getCacheDir(), "shared");
-        if (!cacheRoot.exists() && !cacheRoot.mkdirs()) {
-            throw new IOException("Unable to create shared cache directory");
-        }
-
-        if (displayName != null && !displayName.isEmpty()) {
-            displayName = new File(displayName).getName();
-        }
-        if (displayName == null || displayName.isEmpty()) {
-            displayName = source.getName();
-        }
-        if (displayName == null || displayName.isEmpty()) {
-            displayName = "shared-file";
-        }
-
-        File target = new File(cacheRoot, displayName);
-        target = ensureUniqueFile(target);
-        copyFile(source, target);
-        return target;
-    }
-
-    private File ensureUniqueFile(File target) {
-        if (!target.exists()) {
-            return target;
-        }
-
-        String name = target.getName();
-        String prefix = name;
-        String suffix = "";
-        int dotIndex = name.lastIndexOf('.');
-        if (dotIndex > 0) {
-            prefix = name.substring(0, dotIndex);
-            suffix = name.substring(dotIndex);
-        }
-
-        int index = 1;
-        File candidate = target;
-        while (candidate.exists()) {
-            candidate = new File(target.getParentFile(), prefix + "-" + index + suffix);
-            index++;
-        }
-        return candidate;
-    }
-
-    private void copyFile(File source, File destination) throws IOException {
-        try (
-            InputStream in = new FileInputStream(source);
-            OutputStream out = new FileOutputStream(destination)
-        ) {
-            byte[] buffer = new byte[8192];
-            int length;
-            while ((length = in.read(buffer)) != -1) {
-                out.write(buffer, 0, length);
-            }
-            out.flush();
-        }
-    }
-
     private void grantUriPermissions(Intent intent, Uri uri, int flags) {
         if (uri == null) return;
         PackageManager pm = context.getPackageManager();
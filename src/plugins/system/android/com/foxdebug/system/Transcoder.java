@@ -0,0 +1,195 @@
+package com.foxdebug.system;
+
+import android.content.Context;
+import android.net.Uri;
+import android.system.ErrnoException;
+import android.system.Os;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Converts a file from one charset to another in CHUNK_SIZE pieces, so the
+ * text never exists as a whole, neither here nor in the webview. Malformed
+ * and unmappable input is replaced, like Charset.decode/encode do. A local
+ * destination is written to a temporary file in its directory, given the
+ * destination's mode, and renamed over it.
+ */
+class Transcoder {
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private Transcoder() {}
+
+    /**
+     * Returns {bytesRead, bytesWritten}.
+     */
+    static JSONObject transcode(
+        Context context,
+        String src,
+        String srcCharset,
+        String dest,
+        String destCharset
+    ) throws IOException, JSONException {
+        CharsetDecoder decoder = charset(srcCharset)
+            .newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        CharsetEncoder encoder = charset(destCharset)
+            .newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+        Uri srcUri = FileFingerprint.resolve(src);
+        Uri destUri = FileFingerprint.resolve(dest);
+        File destFile = "file".equalsIgnoreCase(destUri.getScheme())
+            ? new File(destUri.getPath())
+            : null;
+        File temp = destFile == null
+            ? null
+            : File.createTempFile("." + destFile.getName() + ".", ".transcode", destFile.getParentFile());
+
+        long[] counts = new long[2];
+        try (
+            InputStream in = FileFingerprint.open(context, srcUri);
+            OutputStream out = temp != null
+                ? new FileOutputStream(temp)
+                : openOutputStream(context, destUri)
+        ) {
+            transcode(Channels.newChannel(in), decoder, Channels.newChannel(out), encoder, counts);
+            if (temp != null) ((FileOutputStream) out).getFD().sync();
+        } catch (IOException e) {
+            if (temp != null) temp.delete();
+            throw e;
+        }
+
+        if (temp != null) copyMode(destFile, temp);
+        if (temp != null && !temp.renameTo(destFile)) {
+            temp.delete();
+            throw new IOException("Unable to write " + destFile.getAbsolutePath());
+        }
+
+        JSONObject result = new JSONObject();
+        result.put("bytesRead", counts[0]);
+        result.put("bytesWritten", counts[1]);
+        return result;
+    }
+
+    /**
+     * Gives temp the permission bits of target, if target exists.
+     */
+    private static void copyMode(File target, File temp) {
+        try {
+            Os.chmod(temp.getAbsolutePath(), Os.stat(target.getAbsolutePath()).st_mode & 07777);
+        } catch (ErrnoException e) {
+            // a new file, or a filesystem without modes (fuse, sdcardfs)
+        }
+    }
+
+    private static void transcode(
+        ReadableByteChannel input,
+        CharsetDecoder decoder,
+        WritableByteChannel output,
+        CharsetEncoder encoder,
+        long[] counts
+    ) throws IOException {
+        ByteBuffer bytesIn = ByteBuffer.allocate(CHUNK_SIZE);
+        CharBuffer chars = CharBuffer.allocate(CHUNK_SIZE);
+        ByteBuffer bytesOut = ByteBuffer.allocate(
+            (int) Math.ceil(CHUNK_SIZE * encoder.maxBytesPerChar())
+        );
+
+        boolean eof = false;
+        while (!eof) {
+            int read = input.read(bytesIn);
+            eof = read < 0;
+            if (!eof) counts[0] += read;
+
+            bytesIn.flip();
+            CoderResult result;
+            do {
+                result = decoder.decode(bytesIn, chars, eof);
+                counts[1] += encode(chars, encoder, bytesOut, output, false);
+            } while (result.isOverflow());
+            // an incomplete sequence at the end of the chunk stays for the next
+            bytesIn.compact();
+        }
+
+        CoderResult result;
+        do {
+            result = decoder.flush(chars);
+            counts[1] += encode(chars, encoder, bytesOut, output, false);
+        } while (result.isOverflow());
+
+        counts[1] += encode(chars, encoder, bytesOut, output, true);
+    }
+
+    /**
+     * Encodes and writes what is in chars, returns the number of bytes
+     * written. A high surrogate at the end stays in chars unless end.
+     */
+    private static long encode(
+        CharBuffer chars,
+        CharsetEncoder encoder,
+        ByteBuffer bytes,
+        WritableByteChannel output,
+        boolean end
+    ) throws IOException {
+        long written = 0;
+        CoderResult result;
+
+        chars.flip();
+        do {
+            result = encoder.encode(chars, bytes, end);
+            written += write(bytes, output);
+        } while (result.isOverflow());
+        chars.compact();
+
+        if (end) {
+            do {
+                result = encoder.flush(bytes);
+                written += write(bytes, output);
+            } while (result.isOverflow());
+        }
+
+        return written;
+    }
+
+    private static int write(ByteBuffer bytes, WritableByteChannel output) throws IOException {
+        bytes.flip();
+        int length = bytes.remaining();
+        while (bytes.hasRemaining()) {
+            output.write(bytes);
+        }
+        bytes.clear();
+        return length;
+    }
+
+    private static Charset charset(String name) throws IOException {
+        if (name == null || name.isEmpty()) name = "UTF-8";
+        if (!Charset.isSupported(name)) throw new IOException("Charset not supported: " + name);
+        return Charset.forName(name);
+    }
+
+    private static OutputStream openOutputStream(Context context, Uri uri)
+        throws FileNotFoundException {
+        OutputStream out = context.getContentResolver().openOutputStream(uri, "wt");
+        if (out == null) throw new FileNotFoundException("Unable to open " + uri);
+        return out;
+    }
+}
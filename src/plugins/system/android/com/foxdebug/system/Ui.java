@@ -7,7 +7,9 @@ import android.graphics.Color;
 import android.graphics.Paint;
 import android.graphics.Typeface;
 import android.util.Log;
+import android.util.LruCache;
 import android.util.TypedValue;
+import org.json.JSONException;
 import org.json.JSONObject;
 
 public class Ui {
@@ -36,6 +38,20 @@ public class Ui {
     private static int size = 24;
     private static int color = Color.parseColor("#FFFFFF");
     private static final String FONT_PATH = "font/icon.ttf";
+    private static final int CACHE_BYTES = 2 * 1024 * 1024;
+
+    /**
+     * Rendered glyphs by code, size and color. The bitmaps are shared, they
+     * must not be drawn on or recycled.
+     */
+    private static final LruCache<String, Bitmap> cache = new LruCache<String, Bitmap>(
+      CACHE_BYTES
+    ) {
+      @Override
+      protected int sizeOf(String key, Bitmap bitmap) {
+        return bitmap.getByteCount();
+      }
+    };
 
     public static Bitmap get(
       Context context,
@@ -43,30 +59,43 @@ public class Ui {
       int size,
       int color
     ) {
-      if (paint == null) {
-        paint = new Paint();
-        paint.setAntiAlias(true);
-        paint.setTypeface(
-          Typeface.createFromAsset(context.getAssets(), FONT_PATH)
+      String key = code + "|" + size + "|" + color;
+      Bitmap bitmap = cache.get(key);
+      if (bitmap != null) return bitmap;
+
+      // paint is shared, render one glyph at a time
+      synchronized (Icons.class) {
+        // another thread may have rendered it meanwhile; snapshot() looks
+        // without counting a second miss
+        bitmap = cache.snapshot().get(key);
+        if (bitmap != null) return bitmap;
+
+        if (paint == null) {
+          paint = new Paint();
+          paint.setAntiAlias(true);
+          paint.setTypeface(
+            Typeface.createFromAsset(context.getAssets(), FONT_PATH)
+          );
+          paint.setTextAlign(Paint.Align.CENTER);
+        }
+
+        paint.setTextSize(size);
+        paint.setColor(color);
+
+        float baseline = -paint.ascent();
+        int width = (int) paint.measureText(code, 0, code.length());
+        int height = (int) (baseline + paint.descent());
+        bitmap = Bitmap.createBitmap(
+          Math.max(1, width),
+          Math.max(1, height),
+          Bitmap.Config.ARGB_8888
         );
-        paint.setTextAlign(Paint.Align.CENTER);
-      }
+        Canvas canvas = new Canvas(bitmap);
 
-      paint.setTextSize(size);
-      paint.setColor(color);
-
-      float baseline = -paint.ascent();
-      int width = (int) paint.measureText(code, 0, code.length());
-      int height = (int) (baseline + paint.descent());
-      Bitmap bitmap = Bitmap.createBitmap(
-        width,
-        height,
-        Bitmap.Config.ARGB_8888
-      );
-      Canvas canvas = new Canvas(bitmap);
-
-      canvas.drawText(code, width / 2, baseline, paint);
-      return bitmap;
+        canvas.drawText(code, width / 2, baseline, paint);
+        cache.put(key, bitmap);
+        return bitmap;
+      }
     }
 
     public static Bitmap get(
@@ -99,6 +128,29 @@ public class Ui {
     public static void setColor(int color) {
       Icons.color = color;
     }
+
+    /**
+     * Memory used by cached glyphs: {bytes, maxBytes, count, hits, misses,
+     * evictions}.
+     */
+    public static JSONObject getCacheStats() {
+      JSONObject stats = new JSONObject();
+      try {
+        stats.put("bytes", cache.size());
+        stats.put("maxBytes", cache.maxSize());
+        stats.put("count", cache.snapshot().size());
+        stats.put("hits", cache.hitCount());
+        stats.put("misses", cache.missCount());
+        stats.put("evictions", cache.evictionCount());
+      } catch (JSONException e) {
+        Log.e("Ui", "Unable to report icon cache", e);
+      }
+      return stats;
+    }
+
+    public static void clearCache() {
+      cache.evictAll();
+    }
   }
 
   public static class Theme {
@@ -0,0 +1,265 @@
+package com.foxdebug.system;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+import android.provider.DocumentsContract;
+import android.provider.DocumentsContract.Document;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Copies a file into a directory given as a file:// or SAF tree url. An
+ * existing destination is found by its document id, without listing the
+ * directory, and overwritten in place. When both ends are backed by real
+ * file descriptors the copy is done with FileChannel transfers, so the data
+ * doesn't pass through the java heap.
+ */
+class UriCopy {
+
+    /** Bytes per transfer call, progress is reported between calls */
+    private static final long CHUNK_SIZE = 8 * 1024 * 1024;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final long PROGRESS_INTERVAL_MS = 200;
+
+    interface Progress {
+        void update(long loaded, long total);
+    }
+
+    private UriCopy() {}
+
+    /**
+     * Copies src to fileName in destDir and returns {uri, size}. progress
+     * may be null.
+     */
+    static JSONObject copy(
+        Context context,
+        String src,
+        String destDir,
+        String fileName,
+        String mimeType,
+        Progress progress
+    ) throws IOException, JSONException {
+        if (fileName == null || fileName.isEmpty() || fileName.contains("/")) {
+            throw new IOException("Invalid file name: " + fileName);
+        }
+
+        ContentResolver resolver = context.getContentResolver();
+        Uri srcUri = FileFingerprint.resolve(src);
+        Uri destUri = destination(resolver, FileFingerprint.resolve(destDir), fileName, mimeType);
+
+        long size;
+        ParcelFileDescriptor in = "file".equalsIgnoreCase(srcUri.getScheme())
+            ? ParcelFileDescriptor.open(new File(srcUri.getPath()), ParcelFileDescriptor.MODE_READ_ONLY)
+            : resolver.openFileDescriptor(srcUri, "r");
+        if (in == null) throw new FileNotFoundException("Unable to open " + src);
+
+        // the streams own the descriptors, closing them closes both
+        try (FileInputStream input = new ParcelFileDescriptor.AutoCloseInputStream(in)) {
+            ParcelFileDescriptor out = openOutput(resolver, destUri);
+            if (out == null) throw new FileNotFoundException("Unable to open " + destUri);
+
+            try (FileOutputStream output = new ParcelFileDescriptor.AutoCloseOutputStream(out)) {
+                // pipes and sockets (streaming providers) report no size
+                if (in.getStatSize() >= 0 && out.getStatSize() >= 0) {
+                    size = transfer(input.getChannel(), output.getChannel(), in.getStatSize(), progress);
+                } else {
+                    size = stream(input, output, in.getStatSize(), progress);
+                }
+
+                try {
+                    out.getFileDescriptor().sync();
+                } catch (IOException ignored) {
+                    // not every descriptor can be synced
+                }
+            }
+        }
+
+        JSONObject result = new JSONObject();
+        result.put("uri", destUri.toString());
+        result.put("size", size);
+        return result;
+    }
+
+    private static long transfer(FileChannel in, FileChannel out, long total, Progress progress)
+        throws IOException {
+        Reporter reporter = new Reporter(progress, total);
+        long position = 0;
+
+        while (position < total) {
+            long count = in.transferTo(position, Math.min(CHUNK_SIZE, total - position), out);
+            if (count <= 0) break; // source shrunk while copying
+            position += count;
+            reporter.update(position);
+        }
+
+        // a provider may ignore the truncate flag of "wt"
+        if (out.size() > position) out.truncate(position);
+        reporter.done(position);
+        return position;
+    }
+
+    private static long stream(InputStream in, OutputStream out, long total, Progress progress)
+        throws IOException {
+        Reporter reporter = new Reporter(progress, total);
+        ReadableByteChannel input = Channels.newChannel(in);
+        WritableByteChannel output = Channels.newChannel(out);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        long copied = 0;
+
+        while (input.read(buffer) != -1) {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                copied += output.write(buffer);
+            }
+            buffer.clear();
+            reporter.update(copied);
+        }
+
+        out.flush();
+        reporter.done(copied);
+        return copied;
+    }
+
+    /**
+     * Opens the destination for writing from the start, truncating it.
+     */
+    private static ParcelFileDescriptor openOutput(ContentResolver resolver, Uri uri)
+        throws FileNotFoundException {
+        if ("file".equalsIgnoreCase(uri.getScheme())) {
+            return ParcelFileDescriptor.open(
+                new File(uri.getPath()),
+                ParcelFileDescriptor.MODE_WRITE_ONLY |
+                ParcelFileDescriptor.MODE_CREATE |
+                ParcelFileDescriptor.MODE_TRUNCATE
+            );
+        }
+        return resolver.openFileDescriptor(uri, "wt");
+    }
+
+    /**
+     * Uri of fileName in dir, created if it doesn't exist.
+     */
+    private static Uri destination(ContentResolver resolver, Uri dir, String fileName, String mimeType)
+        throws IOException {
+        if ("file".equalsIgnoreCase(dir.getScheme())) {
+            File directory = new File(dir.getPath());
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException("Unable to create " + directory.getAbsolutePath());
+            }
+            return Uri.fromFile(new File(directory, fileName));
+        }
+
+        if (!DocumentsContract.isTreeUri(dir)) {
+            throw new FileNotFoundException("Destination is not a directory: " + dir);
+        }
+
+        // tree/<treeId> or tree/<treeId>/document/<documentId>
+        String dirId = dir.getPathSegments().size() >= 4
+            ? DocumentsContract.getDocumentId(dir)
+            : DocumentsContract.getTreeDocumentId(dir);
+        Uri dirUri = DocumentsContract.buildDocumentUriUsingTree(dir, dirId);
+
+        Uri existing = child(resolver, dir, dirId, fileName);
+        if (existing != null) return existing;
+
+        Uri created;
+        try {
+            created = DocumentsContract.createDocument(resolver, dirUri, mimeType, fileName);
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            throw new FileNotFoundException(
+                "Destination directory does not exist or is not accessible"
+            );
+        }
+        if (created == null) throw new IOException("Failed to create destination file");
+        return created;
+    }
+
+    /**
+     * Finds fileName in the directory dirId. Path based providers (external
+     * storage and most others) name children "dirId/name", so the id is
+     * guessed and the single document queried; the directory is only
+     * listed for providers with opaque ids.
+     */
+    private static Uri child(ContentResolver resolver, Uri tree, String dirId, String fileName)
+        throws IOException {
+        String separator = dirId.endsWith("/") || dirId.endsWith(":") ? "" : "/";
+        Uri guess = DocumentsContract.buildDocumentUriUsingTree(tree, dirId + separator + fileName);
+        String[] projection = {
+            Document.COLUMN_DOCUMENT_ID,
+            Document.COLUMN_DISPLAY_NAME,
+            Document.COLUMN_MIME_TYPE,
+        };
+        String[] found = null;
+
+        try (Cursor cursor = resolver.query(guess, projection, null, null, null)) {
+            if (cursor != null && cursor.moveToFirst() && fileName.equals(cursor.getString(1))) {
+                found = new String[] { cursor.getString(0), cursor.getString(2) };
+            }
+        } catch (Exception e) {
+            // not a path based id
+        }
+
+        if (found == null) {
+            Uri children = DocumentsContract.buildChildDocumentsUriUsingTree(tree, dirId);
+            try (Cursor cursor = resolver.query(children, projection, null, null, null)) {
+                while (cursor != null && cursor.moveToNext()) {
+                    if (fileName.equals(cursor.getString(1))) {
+                        found = new String[] { cursor.getString(0), cursor.getString(2) };
+                        break;
+                    }
+                }
+            } catch (Exception e) {
+                // unreadable directory, creating the file will report it
+            }
+        }
+
+        if (found == null) return null;
+        if (Document.MIME_TYPE_DIR.equals(found[1])) {
+            throw new IOException("Destination is a directory: " + fileName);
+        }
+        return DocumentsContract.buildDocumentUriUsingTree(tree, found[0]);
+    }
+
+    /**
+     * Calls progress at most every PROGRESS_INTERVAL_MS.
+     */
+    private static class Reporter {
+
+        private final Progress progress;
+        private final long total;
+        private long last;
+
+        Reporter(Progress progress, long total) {
+            this.progress = progress;
+            this.total = total;
+            this.last = android.os.SystemClock.elapsedRealtime();
+        }
+
+        void update(long loaded) {
+            if (progress == null) return;
+            long now = android.os.SystemClock.elapsedRealtime();
+            if (now - last < PROGRESS_INTERVAL_MS) return;
+            last = now;
+            progress.update(loaded, total);
+        }
+
+        void done(long loaded) {
+            if (progress != null) progress.update(loaded, total < 0 ? loaded : total);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.foxdebug.system;
+
+/**
+ * Streaming xxHash64 (seed 0). Fast, non-cryptographic, for fingerprints.
+ */
+class XxHash64 {
+
+    private static final long P1 = 0x9E3779B185EBCA87L;
+    private static final long P2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long P3 = 0x165667B19E3779F9L;
+    private static final long P4 = 0x85EBCA77C2B2AE63L;
+    private static final long P5 = 0x27D4EB2F165667C5L;
+
+    private final byte[] buffer = new byte[32];
+    private int buffered = 0;
+    private long total = 0;
+    private long v1 = P1 + P2;
+    private long v2 = P2;
+    private long v3 = 0;
+    private long v4 = -P1;
+
+    void update(byte[] input, int offset, int length) {
+        total += length;
+        int end = offset + length;
+
+        if (buffered + length < 32) {
+            java.lang.System.arraycopy(input, offset, buffer, buffered, length);
+            buffered += length;
+            return;
+        }
+
+        if (buffered > 0) {
+            int fill = 32 - buffered;
+            java.lang.System.arraycopy(input, offset, buffer, buffered, fill);
+            stripe(buffer, 0);
+            offset += fill;
+            buffered = 0;
+        }
+
+        while (offset + 32 <= end) {
+            stripe(input, offset);
+            offset += 32;
+        }
+
+        if (offset < end) {
+            buffered = end - offset;
+            java.lang.System.arraycopy(input, offset, buffer, 0, buffered);
+        }
+    }
+
+    long digest() {
+        long hash;
+        if (total >= 32) {
+            hash =
+                Long.rotateLeft(v1, 1) +
+                Long.rotateLeft(v2, 7) +
+                Long.rotateLeft(v3, 12) +
+                Long.rotateLeft(v4, 18);
+            hash = merge(hash, v1);
+            hash = merge(hash, v2);
+            hash = merge(hash, v3);
+            hash = merge(hash, v4);
+        } else {
+            hash = P5;
+        }
+
+        hash += total;
+
+        int i = 0;
+        while (i + 8 <= buffered) {
+            hash ^= round(0, getLong(buffer, i));
+            hash = Long.rotateLeft(hash, 27) * P1 + P4;
+            i += 8;
+        }
+        if (i + 4 <= buffered) {
+            hash ^= (getInt(buffer, i) & 0xFFFFFFFFL) * P1;
+            hash = Long.rotateLeft(hash, 23) * P2 + P3;
+            i += 4;
+        }
+        while (i < buffered) {
+            hash ^= (buffer[i] & 0xFFL) * P5;
+            hash = Long.rotateLeft(hash, 11) * P1;
+            i++;
+        }
+
+        hash ^= hash >>> 33;
+        hash *= P2;
+        hash ^= hash >>> 29;
+        hash *= P3;
+        hash ^= hash >>> 32;
+        return hash;
+    }
+
+    private void stripe(byte[] input, int offset) {
+        v1 = round(v1, getLong(input, offset));
+        v2 = round(v2, getLong(input, offset + 8));
+        v3 = round(v3, getLong(input, offset + 16));
+        v4 = round(v4, getLong(input, offset + 24));
+    }
+
+    private static long round(long acc, long input) {
+        acc += input * P2;
+        acc = Long.rotateLeft(acc, 31);
+        return acc * P1;
+    }
+
+    private static long merge(long hash, long value) {
+        hash ^= round(0, value);
+        return hash * P1 + P4;
+    }
+
+    private static long getLong(byte[] b, int i) {
+        return (
+            (b[i] & 0xFFL) |
+            ((b[i + 1] & 0xFFL) << 8) |
+            ((b[i + 2] & 0xFFL) << 16) |
+            ((b[i + 3] & 0xFFL) << 24) |
+            ((b[i + 4] & 0xFFL) << 32) |
+            ((b[i + 5] & 0xFFL) << 40) |
+            ((b[i + 6] & 0xFFL) << 48) |
+            ((b[i + 7] & 0xFFL) << 56)
+        );
+    }
+
+    private static int getInt(byte[] b, int i) {
+        return (
+            (b[i] & 0xFF) |
+            ((b[i + 1] & 0xFF) << 8) |
+            ((b[i + 2] & 0xFF) << 16) |
+            ((b[i + 3] & 0xFF) << 24)
+        );
+    }
+}
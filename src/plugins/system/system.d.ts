@@ -295,6 +295,262 @@ interface System {
     onSuccess?: () => void,
     onFail?: OnFail,
   ): void;
+  /**
+   * Replaces a local file atomically (temp file, fsync, rename)
+   * @param path Absolute path or file:// url
+   */
+  writeFile(
+    path: string,
+    content: string | ArrayBuffer,
+    options: { sync?: boolean } | null,
+    onSuccess: (result: { ms: number }) => void,
+    onFail: OnFail,
+  ): void;
+  /**
+   * Writes many local files atomically and in parallel, a failed file
+   * doesn't stop the others
+   */
+  writeFiles(
+    files: Array<{ path: string; data: string | ArrayBuffer }>,
+    options: { sync?: boolean } | null,
+    onSuccess: (result: {
+      files: Array<{ path: string; ok: boolean; error?: string; ms: number }>;
+      elapsed: number;
+    }) => void,
+    onFail: OnFail,
+  ): void;
+  /**
+   * Lists a directory with the attributes of every entry, in a background
+   * thread. Symbolic links are not followed
+   * @param path Absolute path or file:// url
+   */
+  listDir(
+    path: string,
+    options: DirectoryListOptions | null,
+    onSuccess: (result: { entries: DirectoryEntry[]; truncated: boolean }) => void,
+    onFail: OnFail,
+  ): void;
+  /**
+   * Runs filesystem operations in order in a background thread with Os
+   * calls, without spawning processes. Every op gets a result, a failed op
+   * doesn't stop the others unless stopOnError
+   */
+  fsBatch(
+    ops: FileOp[],
+    options: { stopOnError?: boolean } | null,
+    onSuccess: (results: FileOpResult[]) => void,
+    onFail: OnFail,
+  ): void;
+  /**
+   * The last native log lines, and the lines saved by the last crash (null
+   * if there was none)
+   * @param clearCrash Delete the saved crash lines
+   */
+  getNativeLogs(
+    clearCrash: boolean,
+    onSuccess: (result: {
+      recent: NativeLogEntry[];
+      lastCrash: NativeLogEntry[] | null;
+    }) => void,
+    onFail: OnFail,
+  ): void;
+  /**
+   * Native lines above level are not recorded, lines beyond maxPerSecond
+   * (default 200) are dropped, except errors
+   */
+  configureNativeLog(
+    options: {
+      level?: 'error' | 'warn' | 'info' | 'debug';
+      maxPerSecond?: number;
+    },
+    onSuccess: () => void,
+    onFail: OnFail,
+  ): void;
+  /**
+   * Memory used by the cache of rendered icon glyphs, in bytes, and its
+   * hit, miss and eviction counts
+   */
+  getIconCacheStats(
+    onSuccess: (stats: {
+      bytes: number;
+      maxBytes: number;
+      count: number;
+      hits: number;
+      misses: number;
+      evictions: number;
+    }) => void,
+    onFail: OnFail,
+  ): void;
+  /**
+   * Drops the rendered icon glyphs, they are drawn again when needed
+   */
+  clearIconCache(onSuccess: () => void, onFail: OnFail): void;
+  /**
+   * Copies a file into a local or SAF tree directory, overwriting an
+   * existing file of the same name in place
+   * @param destUri Directory, file:// or content:// tree url
+   */
+  copyToUri(
+    srcUri: string,
+    destUri: string,
+    fileName: string,
+    onSuccess: (result: { uri: string; size: number }) => void,
+    onFail: OnFail,
+    onProgress?: (progress: { loaded: number; total: number }) => void,
+  ): void;
+  /**
+   * Fingerprint of a file to check it for changes later, take it while the
+   * editor text matches the file
+   */
+  fingerprintFile(fileUri: string): Promise<FileFingerprint>;
+  /**
+   * Checks a file against a fingerprint without sending the editor text.
+   * Status is 0 (same), 1 (changed) or 2 (unknown, compare the text); when
+   * same, fingerprint is the current one
+   */
+  compareFileFingerprint(
+    fileUri: string,
+    fingerprint: FileFingerprint,
+  ): Promise<{ status: 0 | 1 | 2; fingerprint?: FileFingerprint }>;
+  /**
+   * Hashes a file natively, unchanged files (same size and modification
+   * time) are answered from a persistent cache
+   * @param algorithm Defaults to sha256
+   */
+  checksumFile(fileUri: string, algorithm?: ChecksumAlgorithm): Promise<string>;
+  /**
+   * Same as checksumFile for many files, results are in the order of fileUris
+   */
+  checksumFiles(
+    fileUris: string[],
+    algorithm?: ChecksumAlgorithm,
+  ): Promise<Array<{ url: string; hash?: string; error?: string }>>;
+  /**
+   * Guesses the encoding of a file from its first bytes, most likely first,
+   * empty for binary files
+   * @param sampleSize Bytes to look at, 0 for the default
+   */
+  detectEncoding(
+    fileUri: string,
+    sampleSize?: number,
+  ): Promise<Array<{ encoding: string; confidence: number }>>;
+  /**
+   * Converts a file from one charset to another in a stream, a local
+   * destination is replaced only once it is complete
+   */
+  transcodeFile(
+    src: string,
+    srcCharset: string,
+    dest: string,
+    destCharset: string,
+  ): Promise<{ bytesRead: number; bytesWritten: number }>;
+  /**
+   * Crash safe journal of unsaved buffers
+   */
+  autosave: AutosaveJournal;
+}
+
+interface DirectoryListOptions {
+  /** Walk subdirectories, breadth first */
+  recursive?: boolean;
+  /** Default 16 when recursive */
+  maxDepth?: number;
+  /** Default 10000, the result is truncated after that */
+  maxEntries?: number;
+  /** Include dot files, default true */
+  hidden?: boolean;
+}
+
+interface DirectoryEntry {
+  name: string;
+  path: string;
+  /** 0 for direct children */
+  depth: number;
+  type: 'file' | 'directory' | 'symlink' | 'other';
+  size: number;
+  lastModified: number;
+  /** e.g. "rwxr-xr-x" */
+  permissions?: string;
+  /** Symlinks only */
+  target?: string;
+}
+
+/** Paths are absolute or file:// urls */
+type FileOp =
+  /** force replaces an existing file or link at path */
+  | { op: 'symlink'; target: string; path: string; force?: boolean }
+  /** mode is a number or an octal string, e.g. "755" */
+  | { op: 'chmod'; path: string; mode: number | string }
+  | { op: 'mkdirs'; path: string }
+  /** A missing path is not an error, links are removed, not followed */
+  | { op: 'rm'; path: string; recursive?: boolean }
+  | { op: 'rename'; path: string; target: string }
+  | { op: 'stat'; path: string; followLinks?: boolean }
+  | { op: 'exists'; path: string; followLinks?: boolean };
+
+interface FileOpResult {
+  op: string;
+  path: string;
+  ok: boolean;
+  error?: string;
+  /** Not run because an earlier op failed with stopOnError */
+  skipped?: boolean;
+  /** exists */
+  exists?: boolean;
+  /** stat */
+  type?: 'file' | 'directory' | 'symlink' | 'other';
+  size?: number;
+  /** Permission bits */
+  mode?: number;
+  mtime?: number;
+}
+
+interface NativeLogEntry {
+  time: number;
+  level: 'error' | 'warn' | 'info' | 'debug';
+  message: string;
+}
+
+type ChecksumAlgorithm = 'xxh64' | 'crc32c' | 'crc32' | 'sha256';
+
+interface FileFingerprint {
+  /** Size in bytes */
+  size: number;
+  /** Modification time, -1 if unknown */
+  lastModified: number;
+  /** CRC32 of every 64KB block, hex */
+  blocks: string;
+}
+
+/**
+ * [from, to, insert], applied in order, each against the text left by the
+ * previous change
+ */
+type AutosaveChange = [number, number, string];
+
+interface AutosaveJournal {
+  /**
+   * Records the full text of a buffer
+   */
+  snapshot(id: string, text: string): Promise<void>;
+  /**
+   * Records edits to a buffer, rejects if there is no snapshot or the
+   * changes are out of range, send a snapshot then
+   */
+  delta(id: string, changes: AutosaveChange[]): Promise<void>;
+  /**
+   * Forgets a buffer, e.g. after it was saved or closed
+   */
+  discard(id: string): Promise<void>;
+  /**
+   * Syncs pending records to disk now
+   */
+  flush(): Promise<void>;
+  /**
+   * Recorded text by buffer id
+   */
+  replay(): Promise<Record<string, string>>;
+  clear(): Promise<void>;
 }
 
 interface Window{
@@ -8,8 +8,28 @@ module.exports = {
   requestStorageManager: function (success, error) {
     cordova.exec(success, error, 'System', 'requestStorageManager', []);
   },
-  copyToUri: function (srcUri, destUri, fileName, success, error) {
-    cordova.exec(success, error, 'System', 'copyToUri', [srcUri, destUri, fileName]);
+  /**
+   * Copies srcUri to fileName in the directory destUri, overwriting it.
+   * onProgress, if given, receives {loaded, total} while copying.
+   * @param {string} srcUri
+   * @param {string} destUri
+   * @param {string} fileName
+   * @param {(result: {uri: string, size: number}) => void} success
+   * @param {(err: string) => void} error
+   * @param {(progress: {loaded: number, total: number}) => void} [onProgress]
+   */
+  copyToUri: function (srcUri, destUri, fileName, success, error, onProgress) {
+    var progress = typeof onProgress === 'function';
+    cordova.exec(
+      function (res) {
+        if (progress && res && 'loaded' in res) onProgress(res);
+        else if (success) success(res);
+      },
+      error,
+      'System',
+      'copyToUri',
+      [srcUri, destUri, fileName, progress]
+    );
   },
   fileExists: function (path, countSymlinks, success, error) {
     cordova.exec(success, error, 'System', 'fileExists', [path, String(countSymlinks)]);
@@ -21,6 +41,36 @@ module.exports = {
   writeText: function (path, content, success, error) {
     cordova.exec(success, error, 'System', 'writeText', [path, content]);
   },
+  /**
+   * Replaces a local file atomically (temp file, fsync, rename).
+   * @param {string} path - Absolute path or file:// url
+   * @param {string | ArrayBuffer} content
+   * @param {{sync?: boolean}} [options] - sync defaults to true
+   * @param {(result: {ms: number}) => void} success
+   * @param {(error: string) => void} error
+   */
+  writeFile: function (path, content, options, success, error) {
+    options = Object.assign({}, options, {
+      binary: content instanceof ArrayBuffer,
+    });
+    cordova.exec(success, error, 'System', 'write-file', [path, content, options]);
+  },
+  /**
+   * Writes many local files atomically and in parallel in one call.
+   * @param {Array<{path: string, data: string | ArrayBuffer}>} files
+   * @param {{sync?: boolean}} [options] - sync defaults to true
+   * @param {(result: {files: Array<{path: string, ok: boolean, error?: string, ms: number}>, elapsed: number}) => void} success
+   * @param {(error: string) => void} error
+   */
+  writeFiles: function (files, options, success, error) {
+    var base64 = cordova.require('cordova/base64');
+    var items = files.map(function (file) {
+      return file.data instanceof ArrayBuffer
+        ? { path: file.path, data: base64.fromArrayBuffer(file.data) }
+        : { path: file.path, text: file.data };
+    });
+    cordova.exec(success, error, 'System', 'write-files', [items, options || {}]);
+  },
   deleteFile: function (path, success, error) {
     cordova.exec(success, error, 'System', 'deleteFile', [path]);
   },
@@ -50,6 +100,54 @@ module.exports = {
   listChildren: function (path, success, error) {
     cordova.exec(success, error, 'System', 'listChildren', [path]);
   },
+  /**
+   * Lists a directory with name, type, size, lastModified, permissions and
+   * symlink target of every entry, in a background thread.
+   * @param {string} path - Absolute path or file:// url
+   * @param {{recursive?: boolean, maxDepth?: number, maxEntries?: number, hidden?: boolean}} [options]
+   * @param {(result: {entries: object[], truncated: boolean}) => void} success
+   * @param {(error: string) => void} error
+   */
+  listDir: function (path, options, success, error) {
+    cordova.exec(success, error, 'System', 'list-dir', [path, options || {}]);
+  },
+  /**
+   * Runs filesystem operations (symlink, chmod, mkdirs, rm, rename, stat,
+   * exists) in order in a background thread, without processes.
+   * @param {object[]} ops - e.g. {op: 'symlink', target, path}
+   * @param {{stopOnError?: boolean}} [options]
+   * @param {(results: object[]) => void} success - one result per op
+   * @param {(error: string) => void} error
+   */
+  fsBatch: function (ops, options, success, error) {
+    cordova.exec(success, error, 'System', 'fs-batch', [ops, options || {}]);
+  },
+  /**
+   * Last native log lines and the lines saved by the last crash.
+   * @param {boolean} clearCrash - Delete the saved crash lines
+   * @param {(result: {recent: object[], lastCrash: object[] | null}) => void} success
+   * @param {(error: string) => void} error
+   */
+  getNativeLogs: function (clearCrash, success, error) {
+    cordova.exec(success, error, 'System', 'get-native-logs', [!!clearCrash]);
+  },
+  /**
+   * @param {{level?: 'error' | 'warn' | 'info' | 'debug', maxPerSecond?: number}} options
+   */
+  configureNativeLog: function (options, success, error) {
+    cordova.exec(success, error, 'System', 'configure-native-log', [options || {}]);
+  },
+  /**
+   * Memory used by the rendered icon glyph cache.
+   * @param {(stats: {bytes: number, maxBytes: number, count: number, hits: number, misses: number, evictions: number}) => void} success
+   * @param {(error: string) => void} error
+   */
+  getIconCacheStats: function (success, error) {
+    cordova.exec(success, error, 'System', 'get-icon-cache-stats', []);
+  },
+  clearIconCache: function (success, error) {
+    cordova.exec(success, error, 'System', 'clear-icon-cache', []);
+  },
   mkdirs: function (path, success, error) {
     cordova.exec(success, error, 'System', 'mkdirs', [path]);
   },
@@ -260,5 +358,160 @@ module.exports = {
         [text1, text2]
       );
     });
+  },
+  /**
+   * Fingerprint of a file to check it for changes later with
+   * compareFileFingerprint, take it while the editor text matches the file.
+   * @param {string} fileUri - file:// or content:// URI
+   * @returns {Promise<{size: number, lastModified: number, blocks: string}>}
+   */
+  fingerprintFile: function (fileUri) {
+    return new Promise((resolve, reject) => {
+      cordova.exec(resolve, reject, 'System', 'fingerprint-file', [fileUri]);
+    });
+  },
+  /**
+   * Checks a file against a fingerprint, from size and modification time
+   * when possible, otherwise by streaming it until the first block that
+   * differs.
+   * @param {string} fileUri - file:// or content:// URI
+   * @param {object} fingerprint - From fingerprintFile
+   * @returns {Promise<{status: 0 | 1 | 2, fingerprint?: object}>} - 0 same,
+   * 1 changed, 2 unknown (compare the text)
+   */
+  compareFileFingerprint: function (fileUri, fingerprint) {
+    return new Promise((resolve, reject) => {
+      cordova.exec(
+        resolve,
+        reject,
+        'System',
+        'compare-file-fingerprint',
+        [fileUri, fingerprint]
+      );
+    });
+  },
+  /**
+   * Hashes a file by URI natively, unchanged files are answered from a
+   * persistent cache keyed by size and modification time.
+   * @param {string} fileUri - file:// or content:// URI
+   * @param {'xxh64' | 'crc32c' | 'crc32' | 'sha256'} [algorithm='sha256']
+   * @returns {Promise<string>} - Hex hash
+   */
+  checksumFile: function (fileUri, algorithm) {
+    return new Promise((resolve, reject) => {
+      cordova.exec(resolve, reject, 'System', 'checksum-file', [
+        fileUri,
+        algorithm || 'sha256',
+      ]);
+    });
+  },
+  /**
+   * Same as checksumFile for many files in one call.
+   * @param {string[]} fileUris
+   * @param {'xxh64' | 'crc32c' | 'crc32' | 'sha256'} [algorithm='sha256']
+   * @returns {Promise<Array<{url: string, hash?: string, error?: string}>>}
+   */
+  checksumFiles: function (fileUris, algorithm) {
+    return new Promise((resolve, reject) => {
+      cordova.exec(resolve, reject, 'System', 'checksum-files', [
+        fileUris,
+        algorithm || 'sha256',
+      ]);
+    });
+  },
+  /**
+   * Guesses the encoding of a file from its first bytes.
+   * @param {string} fileUri - file:// or content:// URI
+   * @param {number} [sampleSize] - Bytes to look at, 0 for the default
+   * @returns {Promise<Array<{encoding: string, confidence: number}>>} - Most likely first, empty for binary files
+   */
+  detectEncoding: function (fileUri, sampleSize) {
+    return new Promise((resolve, reject) => {
+      cordova.exec(resolve, reject, 'System', 'detect-encoding', [
+        fileUri,
+        sampleSize || 0,
+      ]);
+    });
+  },
+  /**
+   * Converts a file from one charset to another in a stream.
+   * @param {string} src - file:// or content:// URI
+   * @param {string} srcCharset
+   * @param {string} dest - file:// or content:// URI
+   * @param {string} destCharset
+   * @returns {Promise<{bytesRead: number, bytesWritten: number}>}
+   */
+  transcodeFile: function (src, srcCharset, dest, destCharset) {
+    return new Promise((resolve, reject) => {
+      cordova.exec(resolve, reject, 'System', 'transcode-file', [
+        src,
+        srcCharset,
+        dest,
+        destCharset,
+      ]);
+    });
+  },
+  /**
+   * Crash safe journal of unsaved buffers. Record a snapshot of a buffer
+   * once, then only its edits as deltas.
+   */
+  autosave: {
+    /**
+     * @param {string} id - Buffer id
+     * @param {string} text - Full text of the buffer
+     * @returns {Promise<void>}
+     */
+    snapshot: function (id, text) {
+      return new Promise((resolve, reject) => {
+        cordova.exec(resolve, reject, 'System', 'autosave-snapshot', [id, text]);
+      });
+    },
+    /**
+     * Changes are [from, to, insert], applied in order, each against the
+     * text left by the previous one. Rejects if the journal is out of sync,
+     * send a snapshot then.
+     * @param {string} id - Buffer id
+     * @param {Array<[number, number, string]>} changes
+     * @returns {Promise<void>}
+     */
+    delta: function (id, changes) {
+      return new Promise((resolve, reject) => {
+        cordova.exec(resolve, reject, 'System', 'autosave-delta', [id, changes]);
+      });
+    },
+    /**
+     * @param {string} id - Buffer id
+     * @returns {Promise<void>}
+     */
+    discard: function (id) {
+      return new Promise((resolve, reject) => {
+        cordova.exec(resolve, reject, 'System', 'autosave-discard', [id]);
+      });
+    },
+    /**
+     * Syncs pending records to disk now, e.g. when the app is paused.
+     * @returns {Promise<void>}
+     */
+    flush: function () {
+      return new Promise((resolve, reject) => {
+        cordova.exec(resolve, reject, 'System', 'autosave-flush', []);
+      });
+    },
+    /**
+     * @returns {Promise<Object<string, string>>} - Recorded text by buffer id
+     */
+    replay: function () {
+      return new Promise((resolve, reject) => {
+        cordova.exec(resolve, reject, 'System', 'autosave-replay', []);
+      });
+    },
+    /**
+     * @returns {Promise<void>}
+     */
+    clear: function () {
+      return new Promise((resolve, reject) => {
+        cordova.exec(resolve, reject, 'System', 'autosave-clear', []);
+      });
+    }
   }
 };
@@ -19,12 +19,13 @@ const Terminal = {
             readAsset("init-sandbox.sh"),
         ]);
 
-        await writeText(`${filesDir}/init-alpine.sh`, initAlpine);
-        await writeText(`${filesDir}/init-sandbox.sh`, initSandbox);
-
-        await deleteFile(`${filesDir}/alpine/bin/rm`).catch(() => {});
-        await writeText(`${filesDir}/alpine/bin/rm`, rmWrapper);
-        await setExec(`${filesDir}/alpine/bin/rm`, true);
+        // bin/rm is a link to busybox, the atomic write replaces the link
+        await writeFiles([
+            { path: `${filesDir}/init-alpine.sh`, data: initAlpine },
+            { path: `${filesDir}/init-sandbox.sh`, data: initSandbox },
+            { path: `${filesDir}/alpine/bin/rm`, data: rmWrapper },
+        ]);
+        await fsBatch([{ op: "chmod", path: `${filesDir}/alpine/bin/rm`, mode: "755" }]);
 
         if (installing) {
             return new Promise((resolve, reject) => {
@@ -182,25 +183,26 @@ const Terminal = {
 
             logger("📁  Setting up directories...");
 
-            await ensureDir(`${filesDir}/.downloaded`);
-
             const alpineDir = `${filesDir}/alpine`;
 
-            await ensureDir(alpineDir);
+            await fsBatch([
+                { op: "mkdirs", path: `${filesDir}/.downloaded` },
+                { op: "mkdirs", path: alpineDir },
+            ]);
 
             logger("📦  Extracting sandbox filesystem...");
             await Executor.execute(`tar --no-same-owner -xf ${filesDir}/alpine.tar.gz -C ${alpineDir}`);
 
             logger("⚙️  Applying basic configuration...");
-            await writeText(`${alpineDir}/etc/resolv.conf`, `nameserver 8.8.4.4 \nnameserver 8.8.8.8`);
-
             const rmWrapper = await readAsset("rm-wrapper.sh");
-            await deleteFile(`${alpineDir}/bin/rm`).catch(() => {});
-            await writeText(`${alpineDir}/bin/rm`, rmWrapper);
-            await setExec(`${alpineDir}/bin/rm`, true);
+            await writeFiles([
+                { path: `${alpineDir}/etc/resolv.conf`, data: `nameserver 8.8.4.4 \nnameserver 8.8.8.8` },
+                { path: `${alpineDir}/bin/rm`, data: rmWrapper },
+            ]);
+            await fsBatch([{ op: "chmod", path: `${alpineDir}/bin/rm`, mode: "755" }]);
 
             logger("✅  Extraction complete");
-            await ensureDir(`${filesDir}/.extracted`);
+            await fsBatch([{ op: "mkdirs", path: `${filesDir}/.extracted` }]);
 
             logger("⚙️  Updating sandbox enviroment...");
             const installResult = await this.startAxs(true, logger, err_logger);
@@ -228,31 +230,14 @@ const Terminal = {
                 system.getFilesDir(resolve, reject);
             });
 
-            const alpineExists = await new Promise((resolve, reject) => {
-                system.fileExists(`${filesDir}/alpine`, false, (result) => {
-                    resolve(result == 1);
-                }, reject);
-            });
-
-            const downloaded = alpineExists && await new Promise((resolve, reject) => {
-                system.fileExists(`${filesDir}/.downloaded`, false, (result) => {
-                    resolve(result == 1);
-                }, reject);
-            });
-
-            const extracted = alpineExists && await new Promise((resolve, reject) => {
-                system.fileExists(`${filesDir}/.extracted`, false, (result) => {
-                    resolve(result == 1);
-                }, reject);
-            });
+            const results = await fsBatch(
+                ["alpine", ".downloaded", ".extracted", ".configured"].map((name) => ({
+                    op: "exists",
+                    path: `${filesDir}/${name}`,
+                }))
+            );
 
-            const configured = alpineExists && await new Promise((resolve, reject) => {
-                system.fileExists(`${filesDir}/.configured`, false, (result) => {
-                    resolve(result == 1);
-                }, reject);
-            });
-
-            resolve(alpineExists && downloaded && extracted && configured);
+            resolve(results.every((result) => result.exists));
         });
     },
 
@@ -428,37 +413,27 @@ function readAsset(assetPath, callback) {
     return promise;
 }
 
-function fileExists(path) {
+function writeFiles(files) {
     return new Promise((resolve, reject) => {
-        system.fileExists(path, false, (result) => {
-            resolve(result == 1);
+        system.writeFiles(files, null, (result) => {
+            const failed = result.files.find((file) => !file.ok);
+            if (failed) reject(new Error(`${failed.path}: ${failed.error}`));
+            else resolve(result);
         }, reject);
     });
 }
 
-async function ensureDir(path) {
-    if (await fileExists(path)) return;
-
-    await new Promise((resolve, reject) => {
-        system.mkdirs(path, resolve, reject);
-    });
-}
-
-function writeText(path, content) {
-    return new Promise((resolve, reject) => {
-        system.writeText(path, content, resolve, reject);
-    });
-}
-
-function deleteFile(path) {
-    return new Promise((resolve, reject) => {
-        system.deleteFile(path, resolve, reject);
-    });
-}
-
-function setExec(path, executable) {
+/**
+ * Runs filesystem operations in one native call, rejects with the first
+ * failed one.
+ */
+function fsBatch(ops) {
     return new Promise((resolve, reject) => {
-        system.setExec(path, executable, resolve, reject);
+        system.fsBatch(ops, { stopOnError: true }, (results) => {
+            const failed = results.find((result) => !result.ok);
+            if (failed) reject(new Error(failed.error || `${failed.op} failed: ${failed.path}`));
+            else resolve(results);
+        }, reject);
     });
 }
 
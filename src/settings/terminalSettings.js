@@ -304,13 +304,9 @@ export default function terminalSettings() {
 
 			// Create backup
 			const backupPath = await Terminal.backup();
-			await system.copyToUri(
-				backupPath,
-				url,
-				"aterm_backup.tar",
-				console.log,
-				console.error,
-			);
+			await new Promise((resolve, reject) => {
+				system.copyToUri(backupPath, url, "aterm_backup.tar", resolve, reject);
+			});
 			loader.removeTitleLoader();
 			alert(strings.success.toUpperCase(), `${strings["backup successful"]}.`);
 		} catch (error) {
@@ -329,27 +325,35 @@ export default function terminalSettings() {
 
 			sdcard.openDocumentFile(
 				async (data) => {
-					loader.showTitleLoader();
-					//this will create a file at $PREFIX/atem_backup.tar.tar
-					await system.copyToUri(
-						data.uri,
-						cordova.file.dataDirectory,
-						"aterm_backup.tar",
-						console.log,
-						console.error,
-					);
+					try {
+						loader.showTitleLoader();
+						//this will create a file at $PREFIX/atem_backup.tar.tar
+						await new Promise((resolve, reject) => {
+							system.copyToUri(
+								data.uri,
+								cordova.file.dataDirectory,
+								"aterm_backup.tar",
+								resolve,
+								reject,
+							);
+						});
 
-					// Restore
-					await Terminal.restore();
+						// Restore
+						await Terminal.restore();
 
-					//Cleanup restore file
-					await Executor.execute("rm -rf $PREFIX/aterm_backup.*");
+						//Cleanup restore file
+						await Executor.execute("rm -rf $PREFIX/aterm_backup.*");
 
-					loader.removeTitleLoader();
-					alert(
-						strings.success.toUpperCase(),
-						"Terminal restored successfully",
-					);
+						loader.removeTitleLoader();
+						alert(
+							strings.success.toUpperCase(),
+							"Terminal restored successfully",
+						);
+					} catch (error) {
+						loader.removeTitleLoader();
+						console.error("Terminal restore failed:", error);
+						toast(error.toString());
+					}
 				},
 				toast,
 				"application/x-tar",
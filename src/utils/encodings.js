@@ -1,5 +1,6 @@
 import alert from "dialogs/alert";
 import settings from "lib/settings";
+import Url from "utils/Url";
 
 let encodings = {};
 
@@ -151,6 +152,26 @@ export async function detectEncoding(buffer) {
 	return def === "auto" ? "UTF-8" : def || "UTF-8";
 }
 
+/**
+ * Detects the encoding of a file natively from its first bytes, without
+ * reading the whole file
+ * @param {string} url
+ * @returns {Promise<string|null>} null if unsure or the url is not file:// or content://
+ */
+export async function detectFileEncoding(url) {
+	if (!/^(file|content):/.test(url)) return null;
+
+	try {
+		const [best] = await system.detectEncoding(url, 0);
+		if (!best || best.confidence < 0.5 || !encodings[best.encoding]) {
+			return null;
+		}
+		return best.encoding;
+	} catch (error) {
+		return null;
+	}
+}
+
 /**
  * Decodes arrayBuffer to String according given encoding type
  * @param {ArrayBuffer} buffer
@@ -165,13 +186,7 @@ export async function decode(buffer, charset) {
 		isJson = true;
 	}
 
-	if (!charset) {
-		charset = settings.value.defaultFileEncoding;
-	}
-
-	if (charset === "auto") charset = "UTF-8";
-
-	charset = getEncoding(charset).name;
+	charset = resolveCharset(charset);
 	const text = await execDecode(buffer, charset);
 
 	if (isJson) {
@@ -188,14 +203,105 @@ export async function decode(buffer, charset) {
  * @returns {Promise<ArrayBuffer>}
  */
 export function encode(text, charset) {
+	charset = resolveCharset(charset);
+	return execEncode(text, charset);
+}
+
+/**
+ * Name of the charset to use for an encoding, the default file encoding
+ * if none is given
+ * @param {string} [charset]
+ * @returns {string}
+ */
+export function resolveCharset(charset) {
 	if (!charset) {
 		charset = settings.value.defaultFileEncoding;
 	}
 
 	if (charset === "auto") charset = "UTF-8";
 
-	charset = getEncoding(charset).name;
-	return execEncode(text, charset);
+	return getEncoding(charset).name;
+}
+
+/**
+ * Converts a file to another charset natively, in a stream
+ * @param {string} src file:// or content:// url
+ * @param {string} srcCharset
+ * @param {string} dest file:// or content:// url
+ * @param {string} destCharset
+ * @returns {Promise<{bytesRead: number, bytesWritten: number}>}
+ */
+export function transcode(src, srcCharset, dest, destCharset) {
+	return system.transcodeFile(src, srcCharset, dest, destCharset);
+}
+
+/**
+ * Reads a file that is not UTF-8 by transcoding it natively to a UTF-8
+ * cache file and decoding that here, so the text doesn't cross the bridge
+ * as base64 in both directions.
+ * @param {string} url file:// or content:// url
+ * @param {string} encoding
+ * @param {(url: string) => Promise<{data: ArrayBuffer}>} readFile reads the cache file
+ * @param {(url: string) => Promise<any>} deleteFile deletes the cache file
+ * @returns {Promise<string|null>} null if the file is UTF-8 or can't be transcoded
+ */
+export async function readTranscoded(url, encoding, readFile, deleteFile) {
+	if (!encoding || encoding === "json" || !/^(file|content):/.test(url)) {
+		return null;
+	}
+
+	const charset = resolveCharset(encoding);
+	if (charset === "UTF-8") return null;
+
+	const cache = transcodeCacheUrl();
+	try {
+		await transcode(url, charset, cache, "UTF-8");
+		const { data } = await readFile(cache);
+		return new TextDecoder("utf-8", { ignoreBOM: true }).decode(data);
+	} catch (error) {
+		return null;
+	} finally {
+		deleteFile(cache).catch(() => {});
+	}
+}
+
+/**
+ * Counterpart of readTranscoded, writes text as UTF-8 to a cache file and
+ * transcodes that natively into url.
+ * @param {string} url file:// url
+ * @param {string} text
+ * @param {string} encoding
+ * @param {(url: string, data: ArrayBuffer) => Promise<any>} writeFile writes the cache file
+ * @param {(url: string) => Promise<any>} deleteFile deletes the cache file
+ * @returns {Promise<boolean>} false if nothing was written
+ */
+export async function writeTranscoded(
+	url,
+	text,
+	encoding,
+	writeFile,
+	deleteFile,
+) {
+	if (!/^file:/.test(url)) return false;
+
+	const charset = resolveCharset(encoding);
+	if (charset === "UTF-8") return false;
+
+	const cache = transcodeCacheUrl();
+	try {
+		await writeFile(cache, new TextEncoder().encode(text).buffer);
+		await transcode(cache, "UTF-8", url, charset);
+		return true;
+	} catch (error) {
+		return false;
+	} finally {
+		deleteFile(cache).catch(() => {});
+	}
+}
+
+function transcodeCacheUrl() {
+	const id = parseInt(Date.now() + Math.random() * 1000000);
+	return Url.join(CACHE_STORAGE, `.transcode-${id}`);
 }
 
 export async function initEncodings() {